@@ -0,0 +1,435 @@
+package edu.escuelaing.loadgen;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives one client connection on its own fixed schedule. Request {@code i}
+ * is due at {@code firstSend + i * interval} whether or not the previous
+ * response has arrived, and its latency is measured from that intended time.
+ * When the server falls behind, the time a request spends waiting for the
+ * connection is therefore counted against the server instead of being
+ * silently skipped, which corrects for coordinated omission. The latency from
+ * the actual send is recorded separately for comparison.
+ */
+class ConnectionWorker implements Runnable {
+    private final InetSocketAddress address;
+    private final String hostHeader;
+    private final RouteMix mix;
+    private final boolean keepAlive;
+    private final int timeoutMillis;
+    private final long firstSend;
+    private final long interval;
+    private final long measureFrom;
+    private final long sendUntil;
+    private final long giveUpAt;
+
+    private final LatencyHistogram corrected = new LatencyHistogram();
+    private final LatencyHistogram uncorrected = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> routeLatencies = new HashMap<>();
+    private final Map<Integer, Long> statusCodes = new TreeMap<>();
+    private long errors;
+    private long timeouts;
+    private long notSent;
+    private long connectionsOpened;
+    private long reconnects;
+    private long bytesSent;
+    private long bytesReceived;
+    private long lastCompletion;
+    private long lastSendTime;
+
+    private Socket socket;
+    private InputStream input;
+    private OutputStream output;
+
+    /**
+     * Creates a new ConnectionWorker. All times are {@link System#nanoTime()}
+     * values.
+     *
+     * @param address       the server address
+     * @param mix           the routes to request
+     * @param keepAlive     whether to reuse the connection between requests
+     * @param timeoutMillis the connect and read timeout
+     * @param firstSend     the intended time of the first request
+     * @param interval      the time between intended sends
+     * @param measureFrom   requests due before this time are warm-up and not
+     *                      recorded
+     * @param sendUntil     no request is due at or after this time
+     * @param giveUpAt      requests still unsent at this time are abandoned
+     */
+    ConnectionWorker(InetSocketAddress address, RouteMix mix, boolean keepAlive, int timeoutMillis, long firstSend,
+            long interval, long measureFrom, long sendUntil, long giveUpAt) {
+        this.address = address;
+        this.hostHeader = address.getHostString() + ":" + address.getPort();
+        this.mix = mix;
+        this.keepAlive = keepAlive;
+        this.timeoutMillis = timeoutMillis;
+        this.firstSend = firstSend;
+        this.interval = interval;
+        this.measureFrom = measureFrom;
+        this.sendUntil = sendUntil;
+        this.giveUpAt = giveUpAt;
+    }
+
+    /**
+     * Sends requests until the end of the schedule.
+     */
+    @Override
+    public void run() {
+        try {
+            for (long due = firstSend; due < sendUntil; due += interval) {
+                long now = waitUntil(due);
+                if (now >= giveUpAt) {
+                    notSent += (sendUntil - due + interval - 1) / interval;
+                    break;
+                }
+                send(mix.next(), due);
+            }
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Sends one request and records its outcome.
+     *
+     * @param route    the route to request
+     * @param due      the intended send time
+     */
+    private void send(RouteMix.Route route, long due) {
+        byte[] request = route.encode(hostHeader, keepAlive);
+        int status;
+        try {
+            status = exchange(request);
+        } catch (SocketTimeoutException e) {
+            close();
+            if (due >= measureFrom) {
+                timeouts++;
+            }
+            return;
+        } catch (IOException e) {
+            close();
+            if (due >= measureFrom) {
+                errors++;
+            }
+            return;
+        }
+
+        long done = System.nanoTime();
+        lastCompletion = done;
+        if (due < measureFrom) {
+            return;
+        }
+        long latency = (done - due) / 1000;
+        corrected.record(latency);
+        uncorrected.record((done - lastSendTime) / 1000);
+        routeLatencies.computeIfAbsent(route.getLabel(), key -> new LatencyHistogram()).record(latency);
+        statusCodes.merge(status, 1L, Long::sum);
+    }
+
+    /**
+     * Writes a request and reads the response. A reused connection that the
+     * server has closed in the meantime is reopened and the request sent once
+     * more; the uncorrected latency is then measured from the second send.
+     *
+     * @param request the encoded request
+     * @return the response status code
+     * @throws IOException if the exchange fails
+     */
+    private int exchange(byte[] request) throws IOException {
+        boolean reused = socket != null;
+        try {
+            return exchangeOnce(request);
+        } catch (IOException e) {
+            if (!reused || e instanceof SocketTimeoutException) {
+                throw e;
+            }
+            close();
+            reconnects++;
+            return exchangeOnce(request);
+        }
+    }
+
+    /**
+     * Writes a request and reads the response on the current connection,
+     * opening one if needed.
+     *
+     * @param request the encoded request
+     * @return the response status code
+     * @throws IOException if the exchange fails
+     */
+    private int exchangeOnce(byte[] request) throws IOException {
+        if (socket == null) {
+            open();
+        }
+        lastSendTime = System.nanoTime();
+        output.write(request);
+        output.flush();
+        bytesSent += request.length;
+
+        String statusLine = readLine();
+        if (statusLine == null) {
+            throw new EOFException("Connection closed before the response");
+        }
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+        int status;
+        try {
+            status = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+
+        long contentLength = -1;
+        boolean closeAfter = !keepAlive || parts[0].equals("HTTP/1.0");
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed Content-Length: " + value);
+                }
+            } else if (name.equalsIgnoreCase("Connection")) {
+                closeAfter |= value.equalsIgnoreCase("close");
+            }
+        }
+        if (line == null) {
+            throw new EOFException("Connection closed in the response headers");
+        }
+
+        if (contentLength >= 0) {
+            skip(contentLength);
+        } else {
+            // Without a length the body runs until the server closes
+            while (input.read() >= 0) {
+                bytesReceived++;
+            }
+            closeAfter = true;
+        }
+        if (closeAfter) {
+            close();
+        }
+        return status;
+    }
+
+    /**
+     * Opens a new connection to the server.
+     *
+     * @throws IOException if the connection cannot be established
+     */
+    private void open() throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMillis);
+        try {
+            socket.connect(address, timeoutMillis);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        input = new BufferedInputStream(socket.getInputStream());
+        output = socket.getOutputStream();
+        connectionsOpened++;
+    }
+
+    /**
+     * Closes the current connection, if any.
+     */
+    private void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to release
+            }
+            socket = null;
+            input = null;
+            output = null;
+        }
+    }
+
+    /**
+     * Reads a CRLF-terminated line.
+     *
+     * @return the line without its terminator, or null at the end of input
+     * @throws IOException if reading fails
+     */
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder(64);
+        int c;
+        while ((c = input.read()) >= 0) {
+            bytesReceived++;
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /**
+     * Discards a response body of known length.
+     *
+     * @param length the number of bytes to discard
+     * @throws IOException if the connection ends early
+     */
+    private void skip(long length) throws IOException {
+        byte[] scratch = new byte[8192];
+        while (length > 0) {
+            int read = input.read(scratch, 0, (int) Math.min(scratch.length, length));
+            if (read < 0) {
+                throw new EOFException("Connection closed in the response body");
+            }
+            length -= read;
+            bytesReceived += read;
+        }
+    }
+
+    /**
+     * Parks the thread until the given time.
+     *
+     * @param deadline the {@link System#nanoTime()} to wait for
+     * @return the current time, at or after the deadline
+     */
+    private static long waitUntil(long deadline) {
+        long now = System.nanoTime();
+        while (now < deadline) {
+            LockSupport.parkNanos(deadline - now);
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    /**
+     * Gets the latencies measured from the intended send times.
+     *
+     * @return the corrected latency histogram
+     */
+    LatencyHistogram getCorrected() {
+        return corrected;
+    }
+
+    /**
+     * Gets the latencies measured from the actual send times.
+     *
+     * @return the uncorrected latency histogram
+     */
+    LatencyHistogram getUncorrected() {
+        return uncorrected;
+    }
+
+    /**
+     * Gets the corrected latencies of each route.
+     *
+     * @return the histograms keyed by route label
+     */
+    Map<String, LatencyHistogram> getRouteLatencies() {
+        return routeLatencies;
+    }
+
+    /**
+     * Gets the number of recorded responses per status code.
+     *
+     * @return the counts keyed by status code
+     */
+    Map<Integer, Long> getStatusCodes() {
+        return statusCodes;
+    }
+
+    /**
+     * Gets the number of requests that failed with an I/O error.
+     *
+     * @return the error count
+     */
+    long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the number of requests that timed out.
+     *
+     * @return the timeout count
+     */
+    long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Gets the number of scheduled requests that were abandoned because the
+     * connection was still busy when the run ended.
+     *
+     * @return the abandoned request count
+     */
+    long getNotSent() {
+        return notSent;
+    }
+
+    /**
+     * Gets the number of connections opened.
+     *
+     * @return the connection count
+     */
+    long getConnectionsOpened() {
+        return connectionsOpened;
+    }
+
+    /**
+     * Gets the number of requests resent because the server had closed a
+     * reused connection.
+     *
+     * @return the reconnect count
+     */
+    long getReconnects() {
+        return reconnects;
+    }
+
+    /**
+     * Gets the number of request bytes written.
+     *
+     * @return the bytes sent
+     */
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Gets the number of response bytes read.
+     *
+     * @return the bytes received
+     */
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the time at which the last response completed.
+     *
+     * @return the {@link System#nanoTime()} of the last completion, 0 if none
+     */
+    long getLastCompletion() {
+        return lastCompletion;
+    }
+}
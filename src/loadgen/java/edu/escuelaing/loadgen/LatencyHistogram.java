@@ -0,0 +1,140 @@
+package edu.escuelaing.loadgen;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram. Values are
+ * recorded in microseconds; every power-of-two range is split into 128
+ * linear sub-buckets, so any recorded value is reported within 1% of its
+ * true value while the counts array stays a few kilobytes regardless of the
+ * range covered. Instances are not thread-safe: each worker records into its
+ * own histogram and the results are merged at the end of the run.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+    private final long[] counts = new long[SUB_BUCKET_COUNT + (64 - SUB_BUCKET_BITS) * SUB_BUCKET_HALF];
+    private long totalCount;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    /**
+     * Records a single value.
+     *
+     * @param value the value in microseconds; negative values count as 0
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all values recorded by another histogram.
+     *
+     * @param other the histogram to merge
+     */
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the value count
+     */
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the smallest recorded value.
+     *
+     * @return the minimum, 0 if nothing was recorded
+     */
+    long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return the maximum, 0 if nothing was recorded
+     */
+    long getMax() {
+        return max;
+    }
+
+    /**
+     * Gets the arithmetic mean of the recorded values.
+     *
+     * @return the mean, 0 if nothing was recorded
+     */
+    double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    /**
+     * Gets the value at a percentile. Like HdrHistogram, the result is the
+     * highest value equivalent to the bucket that holds the requested rank.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @return the value at the percentile, 0 if nothing was recorded
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestEquivalentValue(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Gets the bucket index of a value.
+     *
+     * @param value the non-negative value
+     * @return the bucket index
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (subBucket - SUB_BUCKET_HALF);
+    }
+
+    /**
+     * Gets the largest value that maps to a bucket.
+     *
+     * @param index the bucket index
+     * @return the highest equivalent value
+     */
+    private static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,337 @@
+package edu.escuelaing.loadgen;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-loop HTTP load generator for a running web server. Requests are sent
+ * at a fixed arrival rate spread over a number of connections, independent of
+ * how fast the server answers, and latencies are reported corrected for
+ * coordinated omission as JSON.
+ *
+ * <pre>
+ * mvn -Ploadgen compile exec:java -Dexec.args="--rate=2000 --connections=50 --duration=30 \
+ *     --route=80,GET,/hello?name=user{1000} --route=20,POST,/api/echo,512"
+ * </pre>
+ *
+ * Options, all given as {@code --name=value}:
+ * <ul>
+ * <li>{@code host}, {@code port}: the server, default localhost:8080</li>
+ * <li>{@code rate}: requests per second across all connections, default 1000</li>
+ * <li>{@code connections}: number of client connections, default 16</li>
+ * <li>{@code duration}: seconds of measured load, default 30</li>
+ * <li>{@code warmup}: seconds of unrecorded load before measuring, default 5</li>
+ * <li>{@code connection-mode}: {@code keep-alive} or {@code close}, default keep-alive</li>
+ * <li>{@code route}: {@code <weight>,<method>,<target>[,<bodyBytes>]}, repeatable,
+ * default {@code 1,GET,/hello}</li>
+ * <li>{@code body-size}: body bytes of POST routes without their own size, default 256</li>
+ * <li>{@code timeout}: connect and read timeout in seconds, default 10</li>
+ * <li>{@code label}: free text copied into the report to tell runs apart</li>
+ * <li>{@code output}: file to write the report to, default standard output</li>
+ * </ul>
+ */
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {50, 75, 90, 99, 99.9, 99.99};
+
+    private String host = "localhost";
+    private int port = 8080;
+    private double rate = 1000;
+    private int connections = 16;
+    private int durationSeconds = 30;
+    private int warmupSeconds = 5;
+    private boolean keepAlive = true;
+    private int bodySize = 256;
+    private int timeoutSeconds = 10;
+    private String label = "";
+    private String output;
+    private final List<String> routeSpecs = new ArrayList<>();
+    private final RouteMix mix = new RouteMix();
+
+    /**
+     * Entry point of the load generator.
+     *
+     * @param args the command line options
+     * @throws Exception if the run is interrupted or the report cannot be
+     *                   written
+     */
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadGenerator [--host=H] [--port=P] [--rate=R] [--connections=C] "
+                    + "[--duration=S] [--warmup=S] [--connection-mode=keep-alive|close] "
+                    + "[--route=W,METHOD,TARGET[,BODY]]... [--body-size=B] [--timeout=S] [--label=L] [--output=FILE]");
+            System.exit(2);
+        }
+        generator.run();
+    }
+
+    /**
+     * Parses the command line options.
+     *
+     * @param args the command line options
+     * @throws IllegalArgumentException if an option is unknown or invalid
+     */
+    private void parseArguments(String[] args) {
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Options must be given as --name=value: " + arg);
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            try {
+                switch (name) {
+                    case "host":
+                        host = value;
+                        break;
+                    case "port":
+                        port = Integer.parseInt(value);
+                        break;
+                    case "rate":
+                        rate = Double.parseDouble(value);
+                        break;
+                    case "connections":
+                        connections = Integer.parseInt(value);
+                        break;
+                    case "duration":
+                        durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "warmup":
+                        warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "connection-mode":
+                        if (!value.equals("keep-alive") && !value.equals("close")) {
+                            throw new IllegalArgumentException("connection-mode must be keep-alive or close");
+                        }
+                        keepAlive = value.equals("keep-alive");
+                        break;
+                    case "route":
+                        routeSpecs.add(value);
+                        break;
+                    case "body-size":
+                        bodySize = Integer.parseInt(value);
+                        break;
+                    case "timeout":
+                        timeoutSeconds = Integer.parseInt(value);
+                        break;
+                    case "label":
+                        label = value;
+                        break;
+                    case "output":
+                        output = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: --" + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number for --" + name + ": " + value);
+            }
+        }
+        if (rate <= 0 || connections <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || bodySize < 0
+                || timeoutSeconds <= 0) {
+            throw new IllegalArgumentException("rate, connections, duration and timeout must be positive; "
+                    + "warmup and body-size must not be negative");
+        }
+        for (String spec : routeSpecs) {
+            mix.add(spec, bodySize);
+        }
+        if (mix.isEmpty()) {
+            mix.add("1,GET,/hello", bodySize);
+        }
+    }
+
+    /**
+     * Runs the load and writes the report.
+     *
+     * @throws InterruptedException if interrupted while waiting for the
+     *                              connections
+     * @throws IOException          if the report cannot be written
+     */
+    private void run() throws InterruptedException, IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) * connections / rate);
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long sendUntil = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long giveUpAt = sendUntil + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+
+        System.err.printf(Locale.ROOT, "Sending %.1f requests/s over %d connections to %s:%d for %ds "
+                + "after %ds of warm-up%n", rate, connections, host, port, durationSeconds, warmupSeconds);
+
+        List<ConnectionWorker> workers = new ArrayList<>(connections);
+        List<Thread> threads = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            // Stagger the connections so that arrivals are evenly spaced overall
+            long firstSend = start + (long) (i * TimeUnit.SECONDS.toNanos(1) / rate);
+            ConnectionWorker worker = new ConnectionWorker(address, mix, keepAlive,
+                    (int) TimeUnit.SECONDS.toMillis(timeoutSeconds), firstSend, interval, measureFrom, sendUntil,
+                    giveUpAt);
+            Thread thread = new Thread(worker, "loadgen-" + i);
+            thread.setDaemon(true);
+            workers.add(worker);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        String report = report(workers, measureFrom, sendUntil);
+        if (output != null) {
+            Files.write(Paths.get(output), report.getBytes(StandardCharsets.UTF_8));
+            System.err.println("Report written to " + output);
+        } else {
+            System.out.println(report);
+        }
+    }
+
+    /**
+     * Merges the results of all connections into the JSON report.
+     *
+     * @param workers     the finished connection workers
+     * @param measureFrom the start of the measured window
+     * @param sendUntil   the end of the schedule
+     * @return the JSON report
+     */
+    private String report(List<ConnectionWorker> workers, long measureFrom, long sendUntil) {
+        LatencyHistogram corrected = new LatencyHistogram();
+        LatencyHistogram uncorrected = new LatencyHistogram();
+        Map<String, LatencyHistogram> routeLatencies = new TreeMap<>();
+        Map<Integer, Long> statusCodes = new TreeMap<>();
+        long errors = 0;
+        long timeouts = 0;
+        long notSent = 0;
+        long connectionsOpened = 0;
+        long reconnects = 0;
+        long bytesSent = 0;
+        long bytesReceived = 0;
+        long lastCompletion = sendUntil;
+        for (ConnectionWorker worker : workers) {
+            corrected.add(worker.getCorrected());
+            uncorrected.add(worker.getUncorrected());
+            for (Map.Entry<String, LatencyHistogram> entry : worker.getRouteLatencies().entrySet()) {
+                routeLatencies.computeIfAbsent(entry.getKey(), key -> new LatencyHistogram()).add(entry.getValue());
+            }
+            for (Map.Entry<Integer, Long> entry : worker.getStatusCodes().entrySet()) {
+                statusCodes.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+            errors += worker.getErrors();
+            timeouts += worker.getTimeouts();
+            notSent += worker.getNotSent();
+            connectionsOpened += worker.getConnectionsOpened();
+            reconnects += worker.getReconnects();
+            bytesSent += worker.getBytesSent();
+            bytesReceived += worker.getBytesReceived();
+            lastCompletion = Math.max(lastCompletion, worker.getLastCompletion());
+        }
+        double elapsedSeconds = (lastCompletion - measureFrom) / 1e9;
+
+        StringBuilder json = new StringBuilder(2048);
+        json.append("{\n");
+        json.append("  \"label\": ").append(quote(label)).append(",\n");
+        json.append("  \"target\": ").append(quote(host + ":" + port)).append(",\n");
+        json.append("  \"connectionMode\": ").append(quote(keepAlive ? "keep-alive" : "close")).append(",\n");
+        json.append("  \"connections\": ").append(connections).append(",\n");
+        json.append("  \"targetRate\": ").append(number(rate)).append(",\n");
+        json.append("  \"durationSeconds\": ").append(durationSeconds).append(",\n");
+        json.append("  \"warmupSeconds\": ").append(warmupSeconds).append(",\n");
+        json.append("  \"elapsedSeconds\": ").append(number(elapsedSeconds)).append(",\n");
+        json.append("  \"requests\": ").append(corrected.getTotalCount()).append(",\n");
+        json.append("  \"throughput\": ").append(number(corrected.getTotalCount() / elapsedSeconds)).append(",\n");
+        json.append("  \"errors\": ").append(errors).append(",\n");
+        json.append("  \"timeouts\": ").append(timeouts).append(",\n");
+        json.append("  \"notSent\": ").append(notSent).append(",\n");
+        json.append("  \"connectionsOpened\": ").append(connectionsOpened).append(",\n");
+        json.append("  \"reconnects\": ").append(reconnects).append(",\n");
+        json.append("  \"bytesSent\": ").append(bytesSent).append(",\n");
+        json.append("  \"bytesReceived\": ").append(bytesReceived).append(",\n");
+        json.append("  \"statusCodes\": {");
+        String separator = "";
+        for (Map.Entry<Integer, Long> entry : statusCodes.entrySet()) {
+            json.append(separator).append(quote(String.valueOf(entry.getKey()))).append(": ").append(entry.getValue());
+            separator = ", ";
+        }
+        json.append("},\n");
+        json.append("  \"latencyMicros\": {\n");
+        json.append("    \"corrected\": ").append(summary(corrected)).append(",\n");
+        json.append("    \"uncorrected\": ").append(summary(uncorrected)).append("\n");
+        json.append("  },\n");
+        json.append("  \"routes\": [");
+        separator = "\n";
+        for (RouteMix.Route route : mix.getRoutes()) {
+            LatencyHistogram latencies = routeLatencies.getOrDefault(route.getLabel(), new LatencyHistogram());
+            json.append(separator);
+            json.append("    {\"route\": ").append(quote(route.getLabel()));
+            json.append(", \"weight\": ").append(route.getWeight());
+            json.append(", \"bodyBytes\": ").append(route.getBodyBytes());
+            json.append(", \"requests\": ").append(latencies.getTotalCount());
+            json.append(", \"correctedLatencyMicros\": ").append(summary(latencies)).append('}');
+            separator = ",\n";
+        }
+        json.append("\n  ]\n");
+        json.append('}');
+        return json.toString();
+    }
+
+    /**
+     * Renders the summary statistics of a histogram as a JSON object.
+     *
+     * @param histogram the histogram
+     * @return the JSON object
+     */
+    private static String summary(LatencyHistogram histogram) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"min\": ").append(histogram.getMin());
+        json.append(", \"mean\": ").append(number(histogram.getMean()));
+        for (double percentile : PERCENTILES) {
+            String name = percentile == Math.rint(percentile) ? String.valueOf((long) percentile)
+                    : String.valueOf(percentile);
+            json.append(", \"p").append(name).append("\": ").append(histogram.getValueAtPercentile(percentile));
+        }
+        json.append(", \"max\": ").append(histogram.getMax());
+        return json.append('}').toString();
+    }
+
+    /**
+     * Formats a decimal number for JSON.
+     *
+     * @param value the value
+     * @return the value with three decimals, or 0 if it is not finite
+     */
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.3f", value) : "0";
+    }
+
+    /**
+     * Quotes a string for JSON.
+     *
+     * @param value the string
+     * @return the JSON string literal
+     */
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
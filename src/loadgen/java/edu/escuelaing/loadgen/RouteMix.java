@@ -0,0 +1,199 @@
+package edu.escuelaing.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Weighted mix of the requests sent during a run. Each route is described as
+ * {@code <weight>,<method>,<target>[,<bodyBytes>]}, for example
+ * {@code 80,GET,/hello?name=user{1000}} or {@code 20,POST,/api/echo,512}.
+ * A {@code {N}} placeholder in the target is replaced by a random integer
+ * between 0 and N-1 on every request, which spreads the load over many
+ * distinct parameter values.
+ */
+class RouteMix {
+    private final List<Route> routes = new ArrayList<>();
+    private long totalWeight;
+
+    /**
+     * Adds a route to the mix.
+     *
+     * @param spec             the route description
+     * @param defaultBodyBytes the body size used for POST routes that do not
+     *                         declare one
+     * @throws IllegalArgumentException if the description is invalid
+     */
+    void add(String spec, int defaultBodyBytes) {
+        String[] parts = spec.split(",", 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Route must be <weight>,<method>,<target>[,<bodyBytes>]: " + spec);
+        }
+        int weight;
+        int bodyBytes;
+        try {
+            weight = Integer.parseInt(parts[0].trim());
+            bodyBytes = parts.length == 4 ? Integer.parseInt(parts[3].trim()) : -1;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in route: " + spec);
+        }
+        String method = parts[1].trim().toUpperCase(Locale.ROOT);
+        String target = parts[2].trim();
+        if (weight <= 0 || !target.startsWith("/")) {
+            throw new IllegalArgumentException("Route needs a positive weight and an absolute path: " + spec);
+        }
+        if (bodyBytes < 0) {
+            bodyBytes = "POST".equals(method) || "PUT".equals(method) ? defaultBodyBytes : 0;
+        }
+        Route route = new Route(weight, method, target, bodyBytes);
+        try {
+            Route.expand(target);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Placeholders must be {N} with a positive N: " + spec);
+        }
+        routes.add(route);
+        totalWeight += weight;
+    }
+
+    /**
+     * Checks whether no route was added.
+     *
+     * @return true if the mix is empty
+     */
+    boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    /**
+     * Gets the configured routes.
+     *
+     * @return the routes in declaration order
+     */
+    List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Picks a route at random according to the weights.
+     *
+     * @return the chosen route
+     */
+    Route next() {
+        long pick = ThreadLocalRandom.current().nextLong(totalWeight);
+        for (Route route : routes) {
+            pick -= route.weight;
+            if (pick < 0) {
+                return route;
+            }
+        }
+        return routes.get(routes.size() - 1);
+    }
+
+    /**
+     * A single entry of the mix together with its encoded request.
+     */
+    static class Route {
+        private final int weight;
+        private final String method;
+        private final String target;
+        private final int bodyBytes;
+        private final boolean templated;
+        private final byte[] body;
+
+        /**
+         * Creates a new Route.
+         *
+         * @param weight    the relative weight
+         * @param method    the request method
+         * @param target    the request target, possibly with placeholders
+         * @param bodyBytes the size of the request body
+         */
+        Route(int weight, String method, String target, int bodyBytes) {
+            this.weight = weight;
+            this.method = method;
+            this.target = target;
+            this.bodyBytes = bodyBytes;
+            this.templated = target.indexOf('{') >= 0;
+            this.body = new byte[bodyBytes];
+            Arrays.fill(body, (byte) 'x');
+        }
+
+        /**
+         * Encodes a request for this route.
+         *
+         * @param host      the value of the Host header
+         * @param keepAlive whether the connection should stay open
+         * @return the request bytes
+         */
+        byte[] encode(String host, boolean keepAlive) {
+            StringBuilder head = new StringBuilder(128);
+            head.append(method).append(' ').append(templated ? expand(target) : target).append(" HTTP/1.1\r\n");
+            head.append("Host: ").append(host).append("\r\n");
+            head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+            if (bodyBytes > 0 || "POST".equals(method) || "PUT".equals(method)) {
+                head.append("Content-Type: text/plain\r\n");
+                head.append("Content-Length: ").append(bodyBytes).append("\r\n");
+            }
+            head.append("\r\n");
+
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.US_ASCII);
+            byte[] request = Arrays.copyOf(headBytes, headBytes.length + bodyBytes);
+            System.arraycopy(body, 0, request, headBytes.length, bodyBytes);
+            return request;
+        }
+
+        /**
+         * Replaces every {@code {N}} placeholder with a random integer.
+         *
+         * @param template the target template
+         * @return the expanded target
+         */
+        private static String expand(String template) {
+            StringBuilder expanded = new StringBuilder(template.length());
+            int position = 0;
+            while (position < template.length()) {
+                int open = template.indexOf('{', position);
+                int close = open < 0 ? -1 : template.indexOf('}', open);
+                if (close < 0) {
+                    expanded.append(template, position, template.length());
+                    break;
+                }
+                expanded.append(template, position, open);
+                int bound = Integer.parseInt(template.substring(open + 1, close));
+                expanded.append(ThreadLocalRandom.current().nextInt(bound));
+                position = close + 1;
+            }
+            return expanded.toString();
+        }
+
+        /**
+         * Gets the label used for this route in the report.
+         *
+         * @return the method and target template
+         */
+        String getLabel() {
+            return method + " " + target;
+        }
+
+        /**
+         * Gets the relative weight of this route.
+         *
+         * @return the weight
+         */
+        int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Gets the size of the request body.
+         *
+         * @return the body size in bytes
+         */
+        int getBodyBytes() {
+            return bodyBytes;
+        }
+    }
+}
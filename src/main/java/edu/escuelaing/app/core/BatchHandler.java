@@ -0,0 +1,517 @@
+package edu.escuelaing.app.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import edu.escuelaing.app.http.HttpRequest;
+import edu.escuelaing.app.http.HttpResponse;
+
+/**
+ * Serves the built-in {@code POST /_batch} endpoint, which executes several
+ * sub-requests in one round trip. The body is a JSON array of objects with
+ * {@code method}, {@code path} and optional {@code query} (object or query
+ * string), {@code headers}, {@code body} and {@code id} fields. Sub-requests
+ * are dispatched in-process through the {@link RequestHandler} in parallel and
+ * the reply is a JSON array with the status, content type and body of each
+ * one, in request order. Sub-requests the executor turns away run on the
+ * calling thread instead.
+ */
+class BatchHandler {
+    static final String PATH = "/_batch";
+    private static final int MAX_SUB_REQUESTS = 100;
+    static final int MAX_NESTING_DEPTH = 8;
+
+    private final Executor executor;
+
+    /**
+     * Creates a new BatchHandler.
+     *
+     * @param executor the executor that runs sub-requests in parallel
+     */
+    BatchHandler(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Handles a batch request.
+     *
+     * @param requestHandler the handler that serves each sub-request
+     * @param request        the HTTP request
+     * @param response       the HTTP response
+     */
+    void handle(RequestHandler requestHandler, HttpRequest request, HttpResponse response) {
+        List<?> items;
+        try {
+            Object parsed = new JsonReader(request.getBody() != null ? request.getBody() : "").readDocument();
+            if (!(parsed instanceof List)) {
+                throw new IllegalArgumentException("Batch body must be a JSON array");
+            }
+            items = (List<?>) parsed;
+        } catch (IllegalArgumentException e) {
+            badRequest(response, e.getMessage());
+            return;
+        }
+        if (items.size() > MAX_SUB_REQUESTS) {
+            badRequest(response, "A batch may contain at most " + MAX_SUB_REQUESTS + " requests");
+            return;
+        }
+
+        // A single sub-request gains nothing from a hop to the executor
+        List<CompletableFuture<String>> results = new ArrayList<>(items.size());
+        for (Object item : items) {
+            results.add(items.size() == 1 ? CompletableFuture.completedFuture(execute(requestHandler, item))
+                    : submit(requestHandler, item));
+        }
+
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(results.get(i).join());
+        }
+        json.append(']');
+
+        response.setBody(json.toString());
+        response.setContentType("application/json");
+    }
+
+    /**
+     * Starts a sub-request on the executor, or runs it on the calling thread
+     * when the executor is saturated or shut down.
+     *
+     * @param requestHandler the handler that serves the sub-request
+     * @param item           the parsed sub-request description
+     * @return the future JSON object describing the result
+     */
+    private CompletableFuture<String> submit(RequestHandler requestHandler, Object item) {
+        try {
+            return CompletableFuture.supplyAsync(() -> execute(requestHandler, item), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(execute(requestHandler, item));
+        }
+    }
+
+    /**
+     * Executes a single sub-request and renders its result.
+     *
+     * @param requestHandler the handler that serves the sub-request
+     * @param item           the parsed sub-request description
+     * @return the JSON object describing the result
+     */
+    private static String execute(RequestHandler requestHandler, Object item) {
+        if (!(item instanceof Map)) {
+            return result(null, 400, null, "Sub-request must be a JSON object");
+        }
+        Map<?, ?> fields = (Map<?, ?>) item;
+        Object id = fields.get("id");
+        Object method = fields.get("method");
+        Object path = fields.get("path");
+        if (!(path instanceof String) || !((String) path).startsWith("/")) {
+            return result(id, 400, null, "Sub-request path is required");
+        }
+        if (PATH.equals(path)) {
+            return result(id, 400, null, "Batches cannot be nested");
+        }
+
+        String target = (String) path;
+        Object query = fields.get("query");
+        if (query instanceof String && !((String) query).isEmpty()) {
+            target += "?" + query;
+        }
+
+        HttpRequest subRequest = new HttpRequest();
+        subRequest.setRequestLine(method instanceof String ? ((String) method).toUpperCase(Locale.ROOT) : "GET",
+                target, "HTTP/1.1");
+        if (query instanceof Map) {
+            for (Map.Entry<?, ?> param : ((Map<?, ?>) query).entrySet()) {
+                subRequest.getQueryParams().put(String.valueOf(param.getKey()), stringValue(param.getValue()));
+            }
+        }
+        if (fields.get("headers") instanceof Map) {
+            for (Map.Entry<?, ?> header : ((Map<?, ?>) fields.get("headers")).entrySet()) {
+                subRequest.getHeaders().add(String.valueOf(header.getKey()), stringValue(header.getValue()));
+            }
+        }
+        if (fields.get("body") != null) {
+            subRequest.setBody(stringValue(fields.get("body")));
+        }
+
+        HttpResponse subResponse = new HttpResponse();
+        requestHandler.handle(subRequest, subResponse);
+        if (subResponse.getEventStream() != null) {
+            return result(id, 501, null, "Event streams cannot be batched");
+        }
+        return result(id, subResponse.getStatusCode(), subResponse.getHeaders().get("Content-Type"),
+                subResponse.getBody());
+    }
+
+    /**
+     * Renders the result of one sub-request as a JSON object.
+     *
+     * @param id          the caller-supplied id, or null
+     * @param status      the status code
+     * @param contentType the content type, or null
+     * @param body        the response body
+     * @return the JSON object
+     */
+    private static String result(Object id, int status, String contentType, String body) {
+        StringBuilder json = new StringBuilder("{");
+        if (id != null) {
+            json.append("\"id\":");
+            if (id instanceof Double) {
+                json.append(stringValue(id));
+            } else {
+                appendString(json, stringValue(id));
+            }
+            json.append(',');
+        }
+        json.append("\"status\":").append(status);
+        if (contentType != null) {
+            json.append(",\"contentType\":");
+            appendString(json, contentType);
+        }
+        json.append(",\"body\":");
+        appendString(json, body != null ? body : "");
+        return json.append('}').toString();
+    }
+
+    /**
+     * Rejects the whole batch.
+     *
+     * @param response the HTTP response
+     * @param message  the reason
+     */
+    private static void badRequest(HttpResponse response, String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        response.setStatus(400, "Bad Request");
+        response.setBody(json.append('}').toString());
+        response.setContentType("application/json");
+    }
+
+    /**
+     * Converts a parsed JSON scalar to the string form used for parameters.
+     *
+     * @param value the parsed value
+     * @return the string form
+     */
+    private static String stringValue(Object value) {
+        if (value instanceof Double && ((Double) value) == Math.rint((Double) value)
+                && !Double.isInfinite((Double) value)) {
+            return String.valueOf(((Double) value).longValue());
+        }
+        return String.valueOf(value);
+    }
+
+    /**
+     * Appends a JSON string literal.
+     *
+     * @param json  the destination
+     * @param value the string to quote
+     */
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Minimal JSON reader producing maps, lists, strings, doubles, booleans
+     * and nulls. Nesting is limited to {@link #MAX_NESTING_DEPTH} levels, which
+     * is well above the three the batch format uses, so that deeply nested
+     * input is rejected instead of overflowing the stack.
+     */
+    static class JsonReader {
+        private final String text;
+        private int position;
+        private int depth;
+
+        /**
+         * Creates a new JsonReader.
+         *
+         * @param text the JSON text
+         */
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Reads a complete JSON document.
+         *
+         * @return the parsed value
+         * @throws IllegalArgumentException if the text is not valid JSON
+         */
+        Object readDocument() {
+            Object value = readValue();
+            skipWhitespace();
+            if (position != text.length()) {
+                throw error("Unexpected trailing content");
+            }
+            return value;
+        }
+
+        /**
+         * Reads any JSON value.
+         *
+         * @return the parsed value
+         */
+        private Object readValue() {
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw error("Unexpected end of input");
+            }
+            char c = text.charAt(position);
+            switch (c) {
+                case '{':
+                    return readObject();
+                case '[':
+                    return readArray();
+                case '"':
+                    return readString();
+                case 't':
+                    return readLiteral("true", Boolean.TRUE);
+                case 'f':
+                    return readLiteral("false", Boolean.FALSE);
+                case 'n':
+                    return readLiteral("null", null);
+                default:
+                    return readNumber();
+            }
+        }
+
+        /**
+         * Reads a JSON object.
+         *
+         * @return the parsed object
+         */
+        private Map<String, Object> readObject() {
+            Map<String, Object> object = new LinkedHashMap<>();
+            enter();
+            position++;
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                depth--;
+                return object;
+            }
+            while (true) {
+                skipWhitespace();
+                if (peek() != '"') {
+                    throw error("Expected object key");
+                }
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                object.put(key, readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect('}');
+                    depth--;
+                    return object;
+                }
+            }
+        }
+
+        /**
+         * Reads a JSON array.
+         *
+         * @return the parsed array
+         */
+        private List<Object> readArray() {
+            List<Object> array = new ArrayList<>();
+            enter();
+            position++;
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                depth--;
+                return array;
+            }
+            while (true) {
+                array.add(readValue());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                } else {
+                    expect(']');
+                    depth--;
+                    return array;
+                }
+            }
+        }
+
+        /**
+         * Descends into an object or array.
+         *
+         * @throws IllegalArgumentException if the nesting limit is exceeded
+         */
+        private void enter() {
+            if (++depth > MAX_NESTING_DEPTH) {
+                throw error("Nesting deeper than " + MAX_NESTING_DEPTH + " levels");
+            }
+        }
+
+        /**
+         * Reads a JSON string literal.
+         *
+         * @return the unescaped string
+         */
+        private String readString() {
+            StringBuilder value = new StringBuilder();
+            position++;
+            while (true) {
+                if (position >= text.length()) {
+                    throw error("Unterminated string");
+                }
+                char c = text.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    throw error("Unterminated escape");
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw error("Invalid unicode escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("Invalid unicode escape");
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(escaped);
+                }
+            }
+        }
+
+        /**
+         * Reads a JSON number.
+         *
+         * @return the parsed number
+         */
+        private Double readNumber() {
+            int start = position;
+            while (position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            try {
+                return Double.valueOf(text.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("Invalid value");
+            }
+        }
+
+        /**
+         * Reads one of the literal keywords.
+         *
+         * @param literal the expected keyword
+         * @param value   the value it stands for
+         * @return the value
+         */
+        private Object readLiteral(String literal, Object value) {
+            if (!text.startsWith(literal, position)) {
+                throw error("Invalid value");
+            }
+            position += literal.length();
+            return value;
+        }
+
+        /**
+         * Consumes an expected character.
+         *
+         * @param c the expected character
+         */
+        private void expect(char c) {
+            if (peek() != c) {
+                throw error("Expected '" + c + "'");
+            }
+            position++;
+        }
+
+        /**
+         * Gets the current character without consuming it.
+         *
+         * @return the character, or 0 at the end of input
+         */
+        private char peek() {
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        /**
+         * Skips insignificant whitespace.
+         */
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        /**
+         * Builds a parse error for the current position.
+         *
+         * @param message the error description
+         * @return the exception to throw
+         */
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid batch JSON at offset " + position + ": " + message);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import edu.escuelaing.app.annotations.GetMapping;
 import edu.escuelaing.app.annotations.PostMapping;
@@ -11,6 +12,9 @@ import edu.escuelaing.app.annotations.RequestParam;
 import edu.escuelaing.app.annotations.RestController;
 import edu.escuelaing.app.http.HttpRequest;
 import edu.escuelaing.app.http.HttpResponse;
+import edu.escuelaing.app.jfr.InvokeEvent;
+import edu.escuelaing.app.jfr.RouteEvent;
+import edu.escuelaing.app.sse.EventChannel;
 
 /**
  * Handles routing of HTTP requests to appropriate controller methods using
@@ -21,13 +25,26 @@ import edu.escuelaing.app.http.HttpResponse;
 public class RequestHandler {
     private Map<String, RouteInfo> getRoutes;
     private Map<String, RouteInfo> postRoutes;
+    private BatchHandler batchHandler;
 
     /**
-     * Creates a new RequestHandler.
+     * Creates a new RequestHandler that serves the sub-requests of a batch one
+     * after another on the calling thread.
      */
     public RequestHandler() {
+        this(Runnable::run);
+    }
+
+    /**
+     * Creates a new RequestHandler.
+     *
+     * @param batchExecutor the executor that runs the sub-requests of a batch
+     *                      in parallel; the caller owns and shuts it down
+     */
+    public RequestHandler(Executor batchExecutor) {
         this.getRoutes = new HashMap<>();
         this.postRoutes = new HashMap<>();
+        this.batchHandler = new BatchHandler(batchExecutor);
     }
 
     /**
@@ -78,7 +95,9 @@ public class RequestHandler {
     }
 
     /**
-     * Handles an incoming HTTP request.
+     * Handles an incoming HTTP request. The route lookup and the controller
+     * invocation are reported to Flight Recorder when the corresponding events
+     * are enabled.
      *
      * @param request  the HTTP request
      * @param response the HTTP response
@@ -87,8 +106,22 @@ public class RequestHandler {
         String method = request.getMethod();
         String path = request.getPath();
 
+        if ("POST".equals(method) && BatchHandler.PATH.equals(path)) {
+            batchHandler.handle(this, request, response);
+            return;
+        }
+
+        RouteEvent routeEvent = new RouteEvent();
+        routeEvent.begin();
         Map<String, RouteInfo> routes = "GET".equals(method) ? getRoutes : postRoutes;
         RouteInfo routeInfo = routes.get(path);
+        routeEvent.end();
+        if (routeEvent.shouldCommit()) {
+            routeEvent.method = method;
+            routeEvent.path = path;
+            routeEvent.matched = routeInfo != null;
+            routeEvent.commit();
+        }
 
         if (routeInfo == null) {
             response.setStatus(404, "Not Found");
@@ -96,9 +129,13 @@ public class RequestHandler {
             return;
         }
 
+        InvokeEvent invokeEvent = new InvokeEvent();
+        invokeEvent.begin();
         try {
             Object result = invokeMethod(routeInfo, request);
-            if (result != null) {
+            if (result instanceof EventChannel) {
+                response.setEventStream((EventChannel) result);
+            } else if (result != null) {
                 response.setBody(result.toString());
                 if (result instanceof String && ((String) result).startsWith("{")) {
                     response.setContentType("application/json");
@@ -109,6 +146,14 @@ public class RequestHandler {
             response.setBody(
                     "<html><body><h1>500 - Internal Server Error</h1><p>" + e.getMessage() + "</p></body></html>");
         }
+        invokeEvent.end();
+        if (invokeEvent.shouldCommit()) {
+            invokeEvent.route = method + " " + path;
+            invokeEvent.handler = routeInfo.getMethod().getDeclaringClass().getName() + "#"
+                    + routeInfo.getMethod().getName();
+            invokeEvent.status = response.getStatusCode();
+            invokeEvent.commit();
+        }
     }
 
     /**
@@ -1,13 +1,28 @@
 package edu.escuelaing.app.core;
 
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import edu.escuelaing.app.http.BufferPool;
+import edu.escuelaing.app.http.HttpHeaders;
 import edu.escuelaing.app.http.HttpRequest;
 import edu.escuelaing.app.http.HttpResponse;
+import edu.escuelaing.app.http.RequestHeaderTooLargeException;
+import edu.escuelaing.app.http2.Http2Connection;
+import edu.escuelaing.app.jfr.AcceptEvent;
+import edu.escuelaing.app.jfr.ParseEvent;
+import edu.escuelaing.app.jfr.WriteEvent;
+import edu.escuelaing.app.sse.SseDispatcher;
 
 /**
  * Main web server class that handles HTTP requests concurrently.
@@ -16,10 +31,25 @@ import edu.escuelaing.app.http.HttpResponse;
 public class WebServer {
     private static final int DEFAULT_PORT = 8080;
     private static final int THREAD_POOL_SIZE = 10;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int SSE_MAX_QUEUED_EVENTS = 64;
+    private static final long SSE_HEARTBEAT_SECONDS = 15;
+    private static final int DEFAULT_H2_MAX_CONCURRENT_STREAMS = 100;
+    private static final int DEFAULT_H2_STREAM_QUEUE_SIZE = 1000;
+    private static final int REJECT_DRAIN_MILLIS = 1000;
+    private static final long REJECT_DRAIN_LIMIT = 64 * 1024;
+
+    private static final ThreadLocal<Exchange> EXCHANGES = ThreadLocal.withInitial(Exchange::new);
 
     private final int port;
     private final RequestHandler requestHandler;
-    private ServerSocket serverSocket;
+    private final BufferPool bufferPool;
+    private final SseDispatcher sseDispatcher;
+    private final ExecutorService connectionExecutor;
+    private final ExecutorService streamExecutor;
+    private final ExecutorService batchExecutor;
+    private final int maxConcurrentStreams;
+    private ServerSocketChannel serverChannel;
     private ExecutorService executorService;
     private volatile boolean running = false;
 
@@ -37,8 +67,22 @@ public class WebServer {
      */
     public WebServer(int port) {
         this.port = port;
-        this.requestHandler = new RequestHandler();
+        // Batch sub-requests beyond the pool run on the request thread instead of queueing
+        int batchThreads = getIntFromEnvironment("BATCH_THREADS", THREAD_POOL_SIZE);
+        this.batchExecutor = new ThreadPoolExecutor(batchThreads, batchThreads, 0, TimeUnit.MILLISECONDS,
+                new SynchronousQueue<>());
+        this.requestHandler = new RequestHandler(batchExecutor);
         this.executorService = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+        this.bufferPool = new BufferPool(BUFFER_SIZE, THREAD_POOL_SIZE, false,
+                Boolean.parseBoolean(System.getenv("BUFFER_LEAK_DETECTION")));
+        this.sseDispatcher = new SseDispatcher(SSE_MAX_QUEUED_EVENTS, SSE_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+        this.connectionExecutor = Executors.newCachedThreadPool();
+        // Stream handlers share one bounded pool so HTTP/2 cannot exceed the worker bound
+        int streamThreads = getIntFromEnvironment("H2_STREAM_THREADS", THREAD_POOL_SIZE);
+        this.streamExecutor = new ThreadPoolExecutor(streamThreads, streamThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(getIntFromEnvironment("H2_STREAM_QUEUE_SIZE", DEFAULT_H2_STREAM_QUEUE_SIZE)));
+        this.maxConcurrentStreams = getIntFromEnvironment("H2_MAX_CONCURRENT_STREAMS",
+                DEFAULT_H2_MAX_CONCURRENT_STREAMS);
     }
 
     /**
@@ -58,6 +102,30 @@ public class WebServer {
         return DEFAULT_PORT;
     }
 
+    /**
+     * Gets a positive integer setting from an environment variable or returns
+     * the default.
+     *
+     * @param name         the environment variable name
+     * @param defaultValue the value to use when unset or invalid
+     * @return the setting value
+     */
+    private static int getIntFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value != null && !value.isEmpty()) {
+            try {
+                int parsed = Integer.parseInt(value);
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException e) {
+                // Fall through to the default
+            }
+            System.out.println("Invalid " + name + " environment variable, using default: " + defaultValue);
+        }
+        return defaultValue;
+    }
+
     /**
      * Registers a controller class with the request handler.
      *
@@ -73,7 +141,9 @@ public class WebServer {
      * @throws IOException if server cannot start
      */
     public void start() throws IOException {
-        serverSocket = new ServerSocket(port);
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        sseDispatcher.start();
         running = true;
 
         System.out.println("Simple web server started on port " + port + ": http://localhost:" + port + "/hello");
@@ -82,8 +152,9 @@ public class WebServer {
 
         while (running) {
             try {
-                Socket clientSocket = serverSocket.accept();
-                executorService.submit(() -> handleClient(clientSocket));
+                SocketChannel clientChannel = serverChannel.accept();
+                AcceptEvent acceptEvent = beginAcceptEvent();
+                executorService.submit(() -> handleClient(clientChannel, acceptEvent));
             } catch (IOException e) {
                 if (running) {
                     System.err.println("Error accepting client connection: " + e.getMessage());
@@ -93,22 +164,167 @@ public class WebServer {
     }
 
     /**
-     * Handles a client connection in a separate thread.
+     * Starts timing the queue wait of an accepted connection.
      *
-     * @param clientSocket the client socket
+     * @return the started event, or null if Accept events are disabled
      */
-    private void handleClient(Socket clientSocket) {
-        try (Socket socket = clientSocket) {
-            HttpRequest request = new HttpRequest(socket.getInputStream());
-            HttpResponse response = new HttpResponse();
+    private static AcceptEvent beginAcceptEvent() {
+        AcceptEvent acceptEvent = new AcceptEvent();
+        if (!acceptEvent.isEnabled()) {
+            return null;
+        }
+        acceptEvent.begin();
+        return acceptEvent;
+    }
+
+    /**
+     * Handles a client connection in a separate thread. The request and
+     * response objects are reused by each worker thread and the receive buffer
+     * is borrowed from the buffer pool for the duration of the exchange.
+     * Event stream responses hand the open connection to the SSE dispatcher
+     * instead of closing it. Each phase is reported to Flight Recorder when the
+     * corresponding event is enabled.
+     *
+     * @param clientChannel the client connection
+     * @param acceptEvent   the event timing the queue wait, or null when
+     *                      Accept events are disabled
+     */
+    private void handleClient(SocketChannel clientChannel, AcceptEvent acceptEvent) {
+        if (acceptEvent != null) {
+            acceptEvent.end();
+            if (acceptEvent.shouldCommit()) {
+                acceptEvent.remoteAddress = String.valueOf(clientChannel.socket().getRemoteSocketAddress());
+                acceptEvent.commit();
+            }
+        }
+
+        Exchange exchange = EXCHANGES.get();
+        HttpRequest request = exchange.request;
+        HttpResponse response = exchange.response;
+        ByteBuffer buffer = bufferPool.acquire();
+        boolean keepOpen = false;
+
+        try {
+            Socket socket = clientChannel.socket();
+            ParseEvent parseEvent = new ParseEvent();
+            parseEvent.begin();
+            request.parse(socket.getInputStream(), buffer);
+            parseEvent.end();
+            if (parseEvent.shouldCommit()) {
+                parseEvent.method = request.getMethod();
+                parseEvent.path = request.getPath();
+                parseEvent.bytesRead = request.getReceivedBytes();
+                parseEvent.commit();
+            }
 
             System.out.println("Received request: " + request.getMethod() + " " + request.getPath());
 
+            if (Http2Connection.isPriorKnowledge(request) || Http2Connection.isUpgrade(request)) {
+                Http2Connection connection = new Http2Connection(socket.getInputStream(), buffer,
+                        socket.getOutputStream(), request, requestHandler, streamExecutor, maxConcurrentStreams);
+                connectionExecutor.execute(() -> serveHttp2(connection, clientChannel));
+                keepOpen = true;
+                return;
+            }
+
             requestHandler.handle(request, response);
-            response.write(socket.getOutputStream());
+            if (response.getEventStream() == null) {
+                // Regular responses end the connection, which HTTP/1.1 clients must be told
+                response.getHeaders().set(HttpHeaders.CONNECTION, "close");
+            }
+
+            WriteEvent writeEvent = new WriteEvent();
+            writeEvent.begin();
+            response.write(socket.getOutputStream(), request.getSendSpace(buffer));
+            writeEvent.end();
+            if (writeEvent.shouldCommit()) {
+                writeEvent.route = request.getMethod() + " " + request.getPath();
+                writeEvent.status = response.getStatusCode();
+                writeEvent.bytesWritten = response.getBytesWritten();
+                writeEvent.commit();
+            }
 
+            if (response.getEventStream() != null) {
+                sseDispatcher.subscribe(response.getEventStream(), clientChannel);
+                keepOpen = true;
+            }
+
+        } catch (RequestHeaderTooLargeException e) {
+            System.err.println("Rejecting client request: " + e.getMessage());
+            rejectHeaderTooLarge(clientChannel, response, buffer);
         } catch (IOException e) {
             System.err.println("Error handling client request: " + e.getMessage());
+        } finally {
+            request.reset();
+            response.reset();
+            bufferPool.release(buffer);
+            if (!keepOpen) {
+                closeQuietly(clientChannel);
+            }
+        }
+    }
+
+    /**
+     * Answers a request whose header section does not fit in the receive
+     * buffer with {@code 431 Request Header Fields Too Large}. The rest of the
+     * request is drained briefly after the response so that closing the
+     * socket with unread data does not reset the connection before the client
+     * has read the status.
+     *
+     * @param clientChannel the client connection
+     * @param response      the response to fill
+     * @param buffer        the send buffer
+     */
+    private static void rejectHeaderTooLarge(SocketChannel clientChannel, HttpResponse response, ByteBuffer buffer) {
+        response.reset();
+        response.setStatus(431, "Request Header Fields Too Large");
+        response.setBody("<html><body><h1>431 - Request Header Fields Too Large</h1></body></html>");
+        response.getHeaders().set(HttpHeaders.CONNECTION, "close");
+        try {
+            Socket socket = clientChannel.socket();
+            response.write(socket.getOutputStream(), buffer);
+            socket.shutdownOutput();
+            socket.setSoTimeout(REJECT_DRAIN_MILLIS);
+            byte[] drain = buffer.array();
+            long drained = 0;
+            int read;
+            while (drained < REJECT_DRAIN_LIMIT && (read = socket.getInputStream().read(drain)) >= 0) {
+                drained += read;
+            }
+        } catch (IOException e) {
+            // The client has gone or stopped sending; either way we are done
+        }
+    }
+
+    /**
+     * Serves an h2c connection on its own reader thread so that long-lived
+     * HTTP/2 connections do not hold on to request worker threads. The
+     * reader only parses frames; stream handlers run on the bounded stream
+     * executor.
+     *
+     * @param connection    the HTTP/2 connection
+     * @param clientChannel the client connection
+     */
+    private static void serveHttp2(Http2Connection connection, SocketChannel clientChannel) {
+        try {
+            connection.serve();
+        } catch (IOException e) {
+            System.err.println("Error handling HTTP/2 connection: " + e.getMessage());
+        } finally {
+            closeQuietly(clientChannel);
+        }
+    }
+
+    /**
+     * Closes a client connection, logging any failure.
+     *
+     * @param clientChannel the client connection
+     */
+    private static void closeQuietly(SocketChannel clientChannel) {
+        try {
+            clientChannel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing client connection: " + e.getMessage());
         }
     }
 
@@ -123,14 +339,24 @@ public class WebServer {
         System.out.println("Shutting down server...");
         running = false;
 
-        if (serverSocket != null && !serverSocket.isClosed()) {
+        if (serverChannel != null && serverChannel.isOpen()) {
             try {
-                serverSocket.close();
+                serverChannel.close();
             } catch (IOException e) {
                 System.err.println("Error closing server socket: " + e.getMessage());
             }
         }
 
+        sseDispatcher.shutdown();
+        connectionExecutor.shutdown();
+        streamExecutor.shutdown();
+        batchExecutor.shutdown();
+
+        System.out.println("Buffer pool: " + bufferPool);
+        for (Throwable trace : bufferPool.getLeakTraces()) {
+            trace.printStackTrace();
+        }
+
         System.out.println("Server shutdown complete");
     }
 
@@ -151,4 +377,30 @@ public class WebServer {
     public int getPort() {
         return port;
     }
+
+    /**
+     * Gets the buffer pool used for request and response I/O.
+     *
+     * @return the buffer pool
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Gets the dispatcher that owns Server-Sent Events connections.
+     *
+     * @return the SSE dispatcher
+     */
+    public SseDispatcher getSseDispatcher() {
+        return sseDispatcher;
+    }
+
+    /**
+     * Per-thread request and response pair recycled across connections.
+     */
+    private static class Exchange {
+        private final HttpRequest request = new HttpRequest();
+        private final HttpResponse response = new HttpResponse();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,203 @@
+package edu.escuelaing.app.http;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of fixed-size byte buffers shared by connection handlers.
+ * Buffers are recycled instead of being allocated for every request, which
+ * keeps short-lived garbage out of the young generation. When the pool is
+ * empty a fresh buffer is allocated, and buffers released into a full pool
+ * are dropped, so the pool never holds more than its capacity.
+ */
+public class BufferPool {
+    private final int bufferSize;
+    private final int capacity;
+    private final boolean direct;
+    private final BlockingQueue<ByteBuffer> available;
+    private final Map<ByteBuffer, Throwable> outstanding;
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * Creates a new BufferPool of heap buffers without leak tracking.
+     *
+     * @param bufferSize the size of each buffer in bytes
+     * @param capacity   the maximum number of idle buffers kept in the pool
+     */
+    public BufferPool(int bufferSize, int capacity) {
+        this(bufferSize, capacity, false, false);
+    }
+
+    /**
+     * Creates a new BufferPool.
+     *
+     * @param bufferSize    the size of each buffer in bytes
+     * @param capacity      the maximum number of idle buffers kept in the pool
+     * @param direct        whether to allocate direct (off-heap) buffers
+     * @param leakDetection whether to record where each outstanding buffer was
+     *                      acquired
+     */
+    public BufferPool(int bufferSize, int capacity, boolean direct, boolean leakDetection) {
+        if (bufferSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Buffer size and capacity must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.capacity = capacity;
+        this.direct = direct;
+        this.available = new ArrayBlockingQueue<>(capacity);
+        this.outstanding = leakDetection ? new IdentityHashMap<>() : null;
+    }
+
+    /**
+     * Takes a cleared buffer from the pool, allocating a new one if none is
+     * idle.
+     *
+     * @return a buffer ready for writing
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = available.poll();
+        if (buffer == null) {
+            buffer = direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+            allocated.increment();
+        }
+        buffer.clear();
+        acquired.increment();
+
+        if (outstanding != null) {
+            synchronized (outstanding) {
+                outstanding.put(buffer, new Throwable("Buffer acquired by " + Thread.currentThread().getName()));
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. Buffers that were not created by this pool
+     * are ignored.
+     *
+     * @param buffer the buffer to return
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferSize || buffer.isDirect() != direct) {
+            return;
+        }
+
+        if (outstanding != null) {
+            synchronized (outstanding) {
+                if (outstanding.remove(buffer) == null) {
+                    System.err.println("Ignoring release of a buffer that is not outstanding");
+                    return;
+                }
+            }
+        }
+
+        released.increment();
+        if (!available.offer(buffer)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Gets the acquisition traces of buffers that have not been released.
+     * Only available when leak detection is enabled.
+     *
+     * @return the traces of outstanding buffers, empty if tracking is disabled
+     */
+    public List<Throwable> getLeakTraces() {
+        if (outstanding == null) {
+            return List.of();
+        }
+        synchronized (outstanding) {
+            return new ArrayList<>(outstanding.values());
+        }
+    }
+
+    /**
+     * Gets the size of each pooled buffer.
+     *
+     * @return the buffer size in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Gets the maximum number of idle buffers kept by the pool.
+     *
+     * @return the pool capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the number of idle buffers currently in the pool.
+     *
+     * @return the idle buffer count
+     */
+    public int getIdleCount() {
+        return available.size();
+    }
+
+    /**
+     * Gets the number of buffers acquired but not yet released.
+     *
+     * @return the outstanding buffer count
+     */
+    public long getOutstandingCount() {
+        return acquired.sum() - released.sum();
+    }
+
+    /**
+     * Gets the total number of acquisitions.
+     *
+     * @return the acquisition count
+     */
+    public long getAcquiredCount() {
+        return acquired.sum();
+    }
+
+    /**
+     * Gets the total number of releases.
+     *
+     * @return the release count
+     */
+    public long getReleasedCount() {
+        return released.sum();
+    }
+
+    /**
+     * Gets the number of buffers allocated because the pool was empty.
+     *
+     * @return the allocation count
+     */
+    public long getAllocatedCount() {
+        return allocated.sum();
+    }
+
+    /**
+     * Gets the number of released buffers discarded because the pool was full.
+     *
+     * @return the dropped buffer count
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool[size=" + bufferSize + ", idle=" + getIdleCount() + "/" + capacity
+                + ", outstanding=" + getOutstandingCount() + ", allocated=" + getAllocatedCount()
+                + ", dropped=" + getDroppedCount() + "]";
+    }
+}
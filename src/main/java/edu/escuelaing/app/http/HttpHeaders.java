@@ -0,0 +1,477 @@
+package edu.escuelaing.app.http;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordered, case-insensitive collection of HTTP header fields stored in flat
+ * parallel arrays. Headers parsed from a request are kept as byte offsets into
+ * the receive buffer and only turned into strings when read, so headers that
+ * are never looked at cost no allocation. A header may appear more than once,
+ * and well-known headers can be looked up by constant index.
+ */
+public class HttpHeaders {
+    public static final int HOST = 0;
+    public static final int CONTENT_LENGTH = 1;
+    public static final int CONTENT_TYPE = 2;
+    public static final int CONNECTION = 3;
+    public static final int UPGRADE = 4;
+    public static final int ACCEPT = 5;
+    public static final int USER_AGENT = 6;
+    public static final int TRANSFER_ENCODING = 7;
+    public static final int COOKIE = 8;
+    public static final int SET_COOKIE = 9;
+    public static final int SERVER = 10;
+    public static final int CACHE_CONTROL = 11;
+
+    private static final String[] KNOWN_NAMES = {
+            "Host", "Content-Length", "Content-Type", "Connection", "Upgrade", "Accept", "User-Agent",
+            "Transfer-Encoding", "Cookie", "Set-Cookie", "Server", "Cache-Control"
+    };
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] source;
+    private String[] names;
+    private String[] values;
+    private int[] offsets;
+    private int[] known;
+    private final int[] firstKnown;
+    private int size;
+
+    /**
+     * Creates a new empty HttpHeaders.
+     */
+    public HttpHeaders() {
+        this.names = new String[INITIAL_CAPACITY];
+        this.values = new String[INITIAL_CAPACITY];
+        this.offsets = new int[INITIAL_CAPACITY * 4];
+        this.known = new int[INITIAL_CAPACITY];
+        this.firstKnown = new int[KNOWN_NAMES.length];
+        Arrays.fill(firstKnown, -1);
+    }
+
+    /**
+     * Gets the canonical name of a well-known header.
+     *
+     * @param knownHeader the well-known header index
+     * @return the canonical header name
+     */
+    public static String knownName(int knownHeader) {
+        return KNOWN_NAMES[knownHeader];
+    }
+
+    /**
+     * Removes all headers so the instance can be reused.
+     */
+    public void clear() {
+        Arrays.fill(names, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        Arrays.fill(firstKnown, -1);
+        source = null;
+        size = 0;
+    }
+
+    /**
+     * Gets the number of header fields, counting repeated names separately.
+     *
+     * @return the header count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the name of the header at the given position.
+     *
+     * @param index the header position
+     * @return the header name as received or set
+     */
+    public String name(int index) {
+        checkIndex(index);
+        if (names[index] == null) {
+            names[index] = new String(source, offsets[index * 4], offsets[index * 4 + 1],
+                    StandardCharsets.ISO_8859_1);
+        }
+        return names[index];
+    }
+
+    /**
+     * Gets the value of the header at the given position.
+     *
+     * @param index the header position
+     * @return the header value
+     */
+    public String value(int index) {
+        checkIndex(index);
+        if (values[index] == null) {
+            values[index] = new String(source, offsets[index * 4 + 2], offsets[index * 4 + 3],
+                    StandardCharsets.ISO_8859_1);
+        }
+        return values[index];
+    }
+
+    /**
+     * Gets the first value of a well-known header.
+     *
+     * @param knownHeader the well-known header index
+     * @return the header value or null if not present
+     */
+    public String get(int knownHeader) {
+        int index = firstKnown[knownHeader];
+        return index < 0 ? null : value(index);
+    }
+
+    /**
+     * Gets the first value of a header, matching the name case-insensitively.
+     *
+     * @param name the header name
+     * @return the header value or null if not present
+     */
+    public String get(String name) {
+        int index = indexOf(name, 0);
+        return index < 0 ? null : value(index);
+    }
+
+    /**
+     * Gets every value of a header, in the order they were added.
+     *
+     * @param name the header name
+     * @return the header values, empty if not present
+     */
+    public List<String> getAll(String name) {
+        List<String> result = new ArrayList<>();
+        for (int index = indexOf(name, 0); index >= 0; index = indexOf(name, index + 1)) {
+            result.add(value(index));
+        }
+        return result;
+    }
+
+    /**
+     * Parses the first value of a well-known header as a non-negative decimal
+     * number without creating a string.
+     *
+     * @param knownHeader  the well-known header index
+     * @param defaultValue the value to return if the header is absent
+     * @return the parsed value
+     * @throws NumberFormatException if the value is not a decimal number
+     */
+    public long getLong(int knownHeader, long defaultValue) {
+        int index = firstKnown[knownHeader];
+        if (index < 0) {
+            return defaultValue;
+        }
+        if (values[index] != null) {
+            return Long.parseLong(values[index].trim());
+        }
+
+        int start = offsets[index * 4 + 2];
+        int length = offsets[index * 4 + 3];
+        if (length == 0 || length > 18) {
+            throw new NumberFormatException("Invalid numeric header value");
+        }
+        long result = 0;
+        for (int i = start; i < start + length; i++) {
+            int digit = source[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid numeric header value");
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether a header is present.
+     *
+     * @param name the header name
+     * @return true if at least one value is present
+     */
+    public boolean contains(String name) {
+        return indexOf(name, 0) >= 0;
+    }
+
+    /**
+     * Appends a header, keeping any existing values with the same name.
+     *
+     * @param name  the header name
+     * @param value the header value
+     */
+    public void add(String name, String value) {
+        int index = append(knownIndex(name));
+        names[index] = name;
+        values[index] = value;
+    }
+
+    /**
+     * Sets a header, replacing every existing value with the same name. The
+     * header keeps the position of its first occurrence.
+     *
+     * @param name  the header name
+     * @param value the header value
+     */
+    public void set(String name, String value) {
+        int index = indexOf(name, 0);
+        if (index < 0) {
+            add(name, value);
+            return;
+        }
+        values[index] = value;
+        for (int next = indexOf(name, index + 1); next >= 0; next = indexOf(name, next)) {
+            removeAt(next);
+        }
+    }
+
+    /**
+     * Sets a well-known header using its canonical name.
+     *
+     * @param knownHeader the well-known header index
+     * @param value       the header value
+     */
+    public void set(int knownHeader, String value) {
+        set(KNOWN_NAMES[knownHeader], value);
+    }
+
+    /**
+     * Removes every value of a header.
+     *
+     * @param name the header name
+     * @return true if any header was removed
+     */
+    public boolean remove(String name) {
+        boolean removed = false;
+        for (int index = indexOf(name, 0); index >= 0; index = indexOf(name, index)) {
+            removeAt(index);
+            removed = true;
+        }
+        return removed;
+    }
+
+    /**
+     * Decodes every header that is still a range of the receive buffer, so the
+     * headers stay valid after the buffer is reused.
+     */
+    void detach() {
+        for (int i = 0; i < size; i++) {
+            name(i);
+            value(i);
+        }
+        source = null;
+    }
+
+    /**
+     * Appends a header whose name and value are ranges of the receive buffer.
+     * Leading and trailing whitespace around the value is skipped.
+     *
+     * @param data       the receive buffer, shared by all raw headers
+     * @param nameStart  the start of the name
+     * @param nameEnd    the end of the name, exclusive
+     * @param valueStart the start of the value
+     * @param valueEnd   the end of the value, exclusive
+     */
+    void addRaw(byte[] data, int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        while (nameEnd > nameStart && isWhitespace(data[nameEnd - 1])) {
+            nameEnd--;
+        }
+        while (valueStart < valueEnd && isWhitespace(data[valueStart])) {
+            valueStart++;
+        }
+        while (valueEnd > valueStart && isWhitespace(data[valueEnd - 1])) {
+            valueEnd--;
+        }
+
+        source = data;
+        int index = append(knownIndex(data, nameStart, nameEnd - nameStart));
+        names[index] = null;
+        values[index] = null;
+        offsets[index * 4] = nameStart;
+        offsets[index * 4 + 1] = nameEnd - nameStart;
+        offsets[index * 4 + 2] = valueStart;
+        offsets[index * 4 + 3] = valueEnd - valueStart;
+    }
+
+    /**
+     * Reserves a slot for a new header and records it as the first occurrence
+     * of a well-known header if applicable.
+     *
+     * @param knownHeader the well-known header index or -1
+     * @return the slot index
+     */
+    private int append(int knownHeader) {
+        if (size == names.length) {
+            int capacity = size * 2;
+            names = Arrays.copyOf(names, capacity);
+            values = Arrays.copyOf(values, capacity);
+            offsets = Arrays.copyOf(offsets, capacity * 4);
+            known = Arrays.copyOf(known, capacity);
+        }
+        int index = size++;
+        known[index] = knownHeader;
+        if (knownHeader >= 0 && firstKnown[knownHeader] < 0) {
+            firstKnown[knownHeader] = index;
+        }
+        return index;
+    }
+
+    /**
+     * Removes the header at the given position, shifting later headers down.
+     *
+     * @param index the header position
+     */
+    private void removeAt(int index) {
+        int moved = size - index - 1;
+        System.arraycopy(names, index + 1, names, index, moved);
+        System.arraycopy(values, index + 1, values, index, moved);
+        System.arraycopy(offsets, (index + 1) * 4, offsets, index * 4, moved * 4);
+        System.arraycopy(known, index + 1, known, index, moved);
+        size--;
+        names[size] = null;
+        values[size] = null;
+
+        Arrays.fill(firstKnown, -1);
+        for (int i = size - 1; i >= 0; i--) {
+            if (known[i] >= 0) {
+                firstKnown[known[i]] = i;
+            }
+        }
+    }
+
+    /**
+     * Finds the next header with the given name.
+     *
+     * @param name the header name
+     * @param from the position to start searching from
+     * @return the header position or -1 if not found
+     */
+    private int indexOf(String name, int from) {
+        int knownHeader = knownIndex(name);
+        if (knownHeader >= 0) {
+            int first = firstKnown[knownHeader];
+            if (first < 0) {
+                return -1;
+            }
+            for (int i = Math.max(first, from); i < size; i++) {
+                if (known[i] == knownHeader) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        for (int i = from; i < size; i++) {
+            if (known[i] < 0 && nameEquals(i, name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the name at a position with a string, ignoring ASCII case.
+     *
+     * @param index the header position
+     * @param name  the name to compare with
+     * @return true if the names match
+     */
+    private boolean nameEquals(int index, String name) {
+        if (names[index] != null) {
+            return names[index].equalsIgnoreCase(name);
+        }
+        int start = offsets[index * 4];
+        int length = offsets[index * 4 + 1];
+        if (length != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (toLower(source[start + i] & 0xFF) != toLower(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the well-known index of a header name.
+     *
+     * @param name the header name
+     * @return the well-known header index or -1
+     */
+    private static int knownIndex(String name) {
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            if (KNOWN_NAMES[i].length() == name.length() && KNOWN_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the well-known index of a header name held in a byte range.
+     *
+     * @param data   the bytes holding the name
+     * @param start  the start of the name
+     * @param length the length of the name
+     * @return the well-known header index or -1
+     */
+    private static int knownIndex(byte[] data, int start, int length) {
+        for (int i = 0; i < KNOWN_NAMES.length; i++) {
+            String candidate = KNOWN_NAMES[i];
+            if (candidate.length() != length) {
+                continue;
+            }
+            int j = 0;
+            while (j < length && toLower(data[start + j] & 0xFF) == toLower(candidate.charAt(j))) {
+                j++;
+            }
+            if (j == length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Lowercases an ASCII character.
+     *
+     * @param c the character
+     * @return the lowercase character
+     */
+    private static int toLower(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    /**
+     * Checks whether a byte is optional whitespace.
+     *
+     * @param b the byte
+     * @return true for space or horizontal tab
+     */
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * Validates a header position.
+     *
+     * @param index the header position
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Header index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(name(i)).append('=').append(value(i));
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -1,10 +1,9 @@
 package edu.escuelaing.app.http;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,12 +12,25 @@ import java.util.Map;
  * Represents an HTTP request with methods to parse and access request data.
  */
 public class HttpRequest {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_SEND_SPACE = 1024;
+
     private String method;
     private String path;
     private String httpVersion;
-    private Map<String, String> headers;
+    private HttpHeaders headers;
     private Map<String, String> queryParams;
     private String body;
+    private long receivedBytes;
+
+    /**
+     * Creates a new empty HttpRequest that can be filled with
+     * {@link #parse(InputStream, ByteBuffer)} and recycled with {@link #reset()}.
+     */
+    public HttpRequest() {
+        this.headers = new HttpHeaders();
+        this.queryParams = new HashMap<>();
+    }
 
     /**
      * Creates a new HttpRequest by parsing the input stream.
@@ -27,52 +39,248 @@ public class HttpRequest {
      * @throws IOException if reading from stream fails
      */
     public HttpRequest(InputStream inputStream) throws IOException {
-        this.headers = new HashMap<>();
-        this.queryParams = new HashMap<>();
-        parseRequest(inputStream);
+        this();
+        parse(inputStream, ByteBuffer.allocate(DEFAULT_BUFFER_SIZE));
     }
 
     /**
-     * Parses the HTTP request from the input stream.
+     * Clears all request data so the instance can be reused for another
+     * request.
+     */
+    public void reset() {
+        method = null;
+        path = null;
+        httpVersion = null;
+        body = null;
+        receivedBytes = 0;
+        headers.clear();
+        queryParams.clear();
+    }
+
+    /**
+     * Parses an HTTP request from the input stream using the given buffer as
+     * receive space. The request line and headers must fit in the buffer; the
+     * body is read into the buffer too when it fits. On return the buffer's
+     * remaining bytes are those received past the end of the request.
      *
      * @param inputStream the input stream to parse
-     * @throws IOException if reading fails
+     * @param buffer      an array-backed buffer to read into
+     * @throws RequestHeaderTooLargeException if the header section does not
+     *                                         fit in the buffer
+     * @throws IOException                     if reading fails
      */
-    private void parseRequest(InputStream inputStream) throws IOException {
-        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-
-        // Parse request line
-        String requestLine = reader.readLine();
-        if (requestLine != null) {
-            String[] parts = requestLine.split(" ");
-            if (parts.length >= 3) {
-                method = parts[0];
-                parsePathAndQuery(parts[1]);
-                httpVersion = parts[2];
+    public final void parse(InputStream inputStream, ByteBuffer buffer) throws IOException {
+        if (!buffer.hasArray()) {
+            throw new IllegalArgumentException("Request parsing requires an array-backed buffer");
+        }
+        byte[] data = buffer.array();
+        int start = buffer.arrayOffset();
+        int limit = start + buffer.capacity();
+
+        // Read until the blank line that ends the header section
+        int filled = start;
+        int headerEnd = -1;
+        while (headerEnd < 0) {
+            if (filled == limit) {
+                throw new RequestHeaderTooLargeException(
+                        "Request header section exceeds " + buffer.capacity() + " bytes");
+            }
+            int read = inputStream.read(data, filled, limit - filled);
+            if (read < 0) {
+                break;
             }
+            int scanFrom = Math.max(start, filled - 3);
+            filled += read;
+            headerEnd = findHeaderEnd(data, scanFrom, filled);
+        }
+        if (headerEnd < 0) {
+            headerEnd = filled;
         }
 
-        // Parse headers
-        String line;
-        while ((line = reader.readLine()) != null && !line.isEmpty()) {
-            int colonIndex = line.indexOf(':');
-            if (colonIndex > 0) {
-                String headerName = line.substring(0, colonIndex).trim();
-                String headerValue = line.substring(colonIndex + 1).trim();
-                headers.put(headerName.toLowerCase(), headerValue);
+        // Parse request line and headers
+        int lineStart = start;
+        boolean requestLine = true;
+        while (lineStart < headerEnd) {
+            int lineEnd = indexOf(data, (byte) '\n', lineStart, headerEnd);
+            if (lineEnd < 0) {
+                lineEnd = headerEnd;
+            }
+            int contentEnd = lineEnd > lineStart && data[lineEnd - 1] == '\r' ? lineEnd - 1 : lineEnd;
+            if (requestLine) {
+                parseRequestLine(data, lineStart, contentEnd);
+                requestLine = false;
+            } else if (contentEnd == lineStart) {
+                break;
+            } else {
+                parseHeader(data, lineStart, contentEnd);
             }
+            lineStart = lineEnd + 1;
         }
 
         // Parse body if present
-        String contentLength = headers.get("content-length");
-        if (contentLength != null && !contentLength.isEmpty()) {
-            int length = Integer.parseInt(contentLength);
-            if (length > 0) {
-                char[] bodyChars = new char[length];
-                reader.read(bodyChars, 0, length);
-                body = new String(bodyChars);
+        long length = headers.getLong(HttpHeaders.CONTENT_LENGTH, 0);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Request body too large: " + length + " bytes");
+        }
+        int consumed = (int) Math.min(filled, headerEnd + length);
+        receivedBytes = headerEnd - start;
+        if (length > 0) {
+            receivedBytes += parseBody(inputStream, data, headerEnd, filled, limit, (int) length);
+        }
+        buffer.limit(filled - start);
+        buffer.position(consumed - start);
+    }
+
+    /**
+     * Gets send space in the buffer this request was parsed from without
+     * overwriting the request, whose headers refer to the buffer. The space
+     * starts after the parsed request. When too little is left there, the
+     * headers are decoded into strings and the whole buffer is returned.
+     *
+     * @param buffer the buffer passed to {@link #parse(InputStream, ByteBuffer)}
+     * @return the buffer to encode the response into
+     */
+    public ByteBuffer getSendSpace(ByteBuffer buffer) {
+        if (buffer.capacity() - buffer.position() < MIN_SEND_SPACE) {
+            headers.detach();
+            return buffer;
+        }
+        int position = buffer.position();
+        return buffer.duplicate().clear().position(position).slice();
+    }
+
+    /**
+     * Finds the end of the header section, tolerating bare LF line endings.
+     *
+     * @param data the receive buffer
+     * @param from the first index to scan
+     * @param to   the end of the received data
+     * @return the index just after the blank line, or -1 if not yet received
+     */
+    private static int findHeaderEnd(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            if (i + 1 < to && data[i + 1] == '\n') {
+                return i + 2;
+            }
+            if (i + 2 < to && data[i + 1] == '\r' && data[i + 2] == '\n') {
+                return i + 3;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first occurrence of a byte in a range.
+     *
+     * @param data  the bytes to search
+     * @param value the byte to find
+     * @param from  the start index, inclusive
+     * @param to    the end index, exclusive
+     * @return the index of the byte or -1 if not found
+     */
+    private static int indexOf(byte[] data, byte value, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parses the request line into method, path, query and version.
+     *
+     * @param data  the receive buffer
+     * @param start the start of the line
+     * @param end   the end of the line, excluding the line terminator
+     */
+    private void parseRequestLine(byte[] data, int start, int end) {
+        int firstSpace = indexOf(data, (byte) ' ', start, end);
+        int secondSpace = firstSpace < 0 ? -1 : indexOf(data, (byte) ' ', firstSpace + 1, end);
+        if (secondSpace < 0) {
+            return;
+        }
+        method = new String(data, start, firstSpace - start, StandardCharsets.US_ASCII);
+        parsePathAndQuery(new String(data, firstSpace + 1, secondSpace - firstSpace - 1, StandardCharsets.UTF_8));
+        httpVersion = new String(data, secondSpace + 1, end - secondSpace - 1, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Parses a single header line. Only the offsets of the name and value are
+     * recorded; strings are created when the header is read.
+     *
+     * @param data  the receive buffer
+     * @param start the start of the line
+     * @param end   the end of the line, excluding the line terminator
+     */
+    private void parseHeader(byte[] data, int start, int end) {
+        int colonIndex = indexOf(data, (byte) ':', start, end);
+        if (colonIndex > start) {
+            headers.addRaw(data, start, colonIndex, colonIndex + 1, end);
+        }
+    }
+
+    /**
+     * Reads the request body, reusing the receive buffer when the body fits.
+     *
+     * @param inputStream the input stream to read the remainder from
+     * @param data        the receive buffer
+     * @param bodyStart   the index where the body starts
+     * @param filled      the end of the data received so far
+     * @param limit       the end of the receive buffer
+     * @param length      the declared content length
+     * @return the number of body bytes received
+     * @throws IOException if reading fails
+     */
+    private int parseBody(InputStream inputStream, byte[] data, int bodyStart, int filled, int limit, int length)
+            throws IOException {
+        int buffered = Math.min(filled - bodyStart, length);
+        byte[] target = data;
+        int offset = bodyStart;
+        if (bodyStart + length > limit) {
+            target = new byte[length];
+            System.arraycopy(data, bodyStart, target, 0, buffered);
+            offset = 0;
+        }
+
+        int received = buffered;
+        while (received < length) {
+            int read = inputStream.read(target, offset + received, length - received);
+            if (read < 0) {
+                break;
             }
+            received += read;
         }
+        body = new String(target, offset, received, StandardCharsets.UTF_8);
+        return received;
+    }
+
+    /**
+     * Sets the request line for a request that was not parsed from an HTTP/1.x
+     * stream, such as an HTTP/2 stream or an internal sub-request.
+     *
+     * @param method      the HTTP method
+     * @param target      the request target, including any query string
+     * @param httpVersion the protocol version
+     */
+    public void setRequestLine(String method, String target, String httpVersion) {
+        this.method = method;
+        this.httpVersion = httpVersion;
+        this.queryParams.clear();
+        parsePathAndQuery(target);
+    }
+
+    /**
+     * Sets the request body for a request that was not parsed from an HTTP/1.x
+     * stream.
+     *
+     * @param body the request body
+     */
+    public void setBody(String body) {
+        this.body = body;
     }
 
     /**
@@ -138,22 +346,24 @@ public class HttpRequest {
     }
 
     /**
-     * Gets all headers.
+     * Gets all headers. Headers parsed from the network refer to the receive
+     * buffer, so the response must be written into
+     * {@link #getSendSpace(ByteBuffer)} rather than over the request.
      *
-     * @return the headers map
+     * @return the request headers
      */
-    public Map<String, String> getHeaders() {
+    public HttpHeaders getHeaders() {
         return headers;
     }
 
     /**
      * Gets a specific header value.
      *
-     * @param name the header name
-     * @return the header value or null if not found
+     * @param name the header name, matched case-insensitively
+     * @return the first header value or null if not found
      */
     public String getHeader(String name) {
-        return headers.get(name.toLowerCase());
+        return headers.get(name);
     }
 
     /**
@@ -183,4 +393,14 @@ public class HttpRequest {
     public String getBody() {
         return body;
     }
+
+    /**
+     * Gets the number of bytes of the request line, headers and body read
+     * from the network.
+     *
+     * @return the received byte count, 0 if the request was not parsed
+     */
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
 }
\ No newline at end of file
@@ -1,32 +1,51 @@
 package edu.escuelaing.app.http;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+
+import edu.escuelaing.app.sse.EventChannel;
 
 /**
  * Represents an HTTP response with methods to set status, headers, and body.
  */
 public class HttpResponse {
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final byte[] EMPTY_BODY = new byte[0];
+
     private int statusCode;
     private String statusMessage;
-    private Map<String, String> headers;
+    private HttpHeaders headers;
     private String body;
+    private byte[] bodyBytes;
+    private EventChannel eventStream;
+    private long bytesWritten;
 
     /**
      * Creates a new HttpResponse with default values.
      */
     public HttpResponse() {
+        this.headers = new HttpHeaders();
+        reset();
+    }
+
+    /**
+     * Restores the default status, headers and body so the instance can be
+     * reused for another response.
+     */
+    public final void reset() {
         this.statusCode = 200;
         this.statusMessage = "OK";
-        this.headers = new HashMap<>();
         this.body = "";
+        this.bodyBytes = EMPTY_BODY;
+        this.eventStream = null;
+        this.bytesWritten = 0;
 
         // Set default headers
-        headers.put("Content-Type", "text/html; charset=UTF-8");
-        headers.put("Server", "CustomWebFramework/1.0");
+        headers.clear();
+        headers.set(HttpHeaders.CONTENT_TYPE, "text/html; charset=UTF-8");
+        headers.set(HttpHeaders.SERVER, "CustomWebFramework/1.0");
     }
 
     /**
@@ -41,13 +60,23 @@ public class HttpResponse {
     }
 
     /**
-     * Sets a response header.
+     * Sets a response header, replacing any existing values.
      *
      * @param name  the header name
      * @param value the header value
      */
     public void setHeader(String name, String value) {
-        headers.put(name, value);
+        headers.set(name, value);
+    }
+
+    /**
+     * Adds a response header, keeping any existing values with the same name.
+     *
+     * @param name  the header name
+     * @param value the header value
+     */
+    public void addHeader(String name, String value) {
+        headers.add(name, value);
     }
 
     /**
@@ -57,7 +86,8 @@ public class HttpResponse {
      */
     public void setBody(String body) {
         this.body = body != null ? body : "";
-        setHeader("Content-Length", String.valueOf(this.body.getBytes(StandardCharsets.UTF_8).length));
+        this.bodyBytes = this.body.isEmpty() ? EMPTY_BODY : this.body.getBytes(StandardCharsets.UTF_8);
+        headers.set(HttpHeaders.CONTENT_LENGTH, String.valueOf(bodyBytes.length));
     }
 
     /**
@@ -66,31 +96,165 @@ public class HttpResponse {
      * @param contentType the content type
      */
     public void setContentType(String contentType) {
-        setHeader("Content-Type", contentType);
+        headers.set(HttpHeaders.CONTENT_TYPE, contentType);
+    }
+
+    /**
+     * Turns the response into a Server-Sent Events stream for the given
+     * channel. Only the status line and headers are written; the connection
+     * is then kept open and handed over to the event dispatcher.
+     *
+     * @param eventChannel the channel to subscribe the connection to
+     */
+    public void setEventStream(EventChannel eventChannel) {
+        this.eventStream = eventChannel;
+        this.body = "";
+        this.bodyBytes = EMPTY_BODY;
+        headers.remove(HttpHeaders.knownName(HttpHeaders.CONTENT_LENGTH));
+        headers.set(HttpHeaders.CONTENT_TYPE, "text/event-stream; charset=UTF-8");
+        headers.set(HttpHeaders.CACHE_CONTROL, "no-cache");
+        headers.set(HttpHeaders.CONNECTION, "keep-alive");
+    }
+
+    /**
+     * Gets the event channel this response streams, if any.
+     *
+     * @return the event channel or null for a regular response
+     */
+    public EventChannel getEventStream() {
+        return eventStream;
     }
 
     /**
      * Writes the response to the output stream.
      *
      * @param outputStream the output stream to write to
+     * @throws IOException if writing fails
      */
-    public void write(OutputStream outputStream) {
-        PrintWriter writer = new PrintWriter(outputStream, true, StandardCharsets.UTF_8);
+    public void write(OutputStream outputStream) throws IOException {
+        write(outputStream, ByteBuffer.allocate(DEFAULT_BUFFER_SIZE));
+    }
+
+    /**
+     * Writes the response to the output stream, encoding the status line and
+     * headers into the given buffer. The body is copied into the same buffer
+     * when it fits so that small responses go out in a single write.
+     *
+     * @param outputStream the output stream to write to
+     * @param buffer       an array-backed buffer used as send space
+     * @throws IOException if writing fails
+     */
+    public void write(OutputStream outputStream, ByteBuffer buffer) throws IOException {
+        if (!buffer.hasArray()) {
+            throw new IllegalArgumentException("Response writing requires an array-backed buffer");
+        }
+        buffer.clear();
+        bytesWritten = 0;
 
         // Write status line
-        writer.printf("HTTP/1.1 %d %s\r\n", statusCode, statusMessage);
+        putAscii(outputStream, buffer, "HTTP/1.1 ");
+        putInt(outputStream, buffer, statusCode);
+        putAscii(outputStream, buffer, " ");
+        putAscii(outputStream, buffer, statusMessage);
+        putAscii(outputStream, buffer, "\r\n");
 
         // Write headers
-        for (Map.Entry<String, String> header : headers.entrySet()) {
-            writer.printf("%s: %s\r\n", header.getKey(), header.getValue());
+        for (int i = 0; i < headers.size(); i++) {
+            putAscii(outputStream, buffer, headers.name(i));
+            putAscii(outputStream, buffer, ": ");
+            putAscii(outputStream, buffer, headers.value(i));
+            putAscii(outputStream, buffer, "\r\n");
         }
 
         // Write empty line
-        writer.print("\r\n");
+        putAscii(outputStream, buffer, "\r\n");
 
         // Write body
-        writer.print(body);
-        writer.flush();
+        if (bodyBytes.length <= buffer.remaining()) {
+            buffer.put(bodyBytes);
+            flush(outputStream, buffer);
+        } else {
+            flush(outputStream, buffer);
+            outputStream.write(bodyBytes);
+            bytesWritten += bodyBytes.length;
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * Appends a string to the send buffer, flushing it when full. Non-ASCII
+     * characters are encoded as UTF-8.
+     *
+     * @param outputStream the output stream to flush to
+     * @param buffer       the send buffer
+     * @param value        the string to append
+     * @throws IOException if flushing fails
+     */
+    private void putAscii(OutputStream outputStream, ByteBuffer buffer, String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                byte[] encoded = value.substring(i).getBytes(StandardCharsets.UTF_8);
+                for (byte b : encoded) {
+                    putByte(outputStream, buffer, b);
+                }
+                return;
+            }
+            putByte(outputStream, buffer, (byte) c);
+        }
+    }
+
+    /**
+     * Appends the decimal representation of a non-negative integer to the send
+     * buffer.
+     *
+     * @param outputStream the output stream to flush to
+     * @param buffer       the send buffer
+     * @param value        the value to append
+     * @throws IOException if flushing fails
+     */
+    private void putInt(OutputStream outputStream, ByteBuffer buffer, int value) throws IOException {
+        if (value < 0) {
+            putByte(outputStream, buffer, (byte) '-');
+            value = -value;
+        }
+        int divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            putByte(outputStream, buffer, (byte) ('0' + (value / divisor) % 10));
+        }
+    }
+
+    /**
+     * Appends a byte to the send buffer, flushing it when full.
+     *
+     * @param outputStream the output stream to flush to
+     * @param buffer       the send buffer
+     * @param value        the byte to append
+     * @throws IOException if flushing fails
+     */
+    private void putByte(OutputStream outputStream, ByteBuffer buffer, byte value) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush(outputStream, buffer);
+        }
+        buffer.put(value);
+    }
+
+    /**
+     * Writes the buffered bytes to the output stream and clears the buffer.
+     *
+     * @param outputStream the output stream to write to
+     * @param buffer       the send buffer
+     * @throws IOException if writing fails
+     */
+    private void flush(OutputStream outputStream, ByteBuffer buffer) throws IOException {
+        if (buffer.position() > 0) {
+            outputStream.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            bytesWritten += buffer.position();
+        }
+        buffer.clear();
     }
 
     /**
@@ -114,9 +278,9 @@ public class HttpResponse {
     /**
      * Gets all headers.
      *
-     * @return the headers map
+     * @return the response headers
      */
-    public Map<String, String> getHeaders() {
+    public HttpHeaders getHeaders() {
         return headers;
     }
 
@@ -128,4 +292,22 @@ public class HttpResponse {
     public String getBody() {
         return body;
     }
+
+    /**
+     * Gets the number of bytes sent by the last call to write.
+     *
+     * @return the written byte count
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets the UTF-8 encoded response body.
+     *
+     * @return the encoded body
+     */
+    public byte[] getBodyBytes() {
+        return bodyBytes;
+    }
 }
\ No newline at end of file
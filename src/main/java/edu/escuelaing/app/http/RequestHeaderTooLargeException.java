@@ -0,0 +1,21 @@
+package edu.escuelaing.app.http;
+
+import java.io.IOException;
+
+/**
+ * Signals that the request line and headers do not fit in the receive
+ * buffer, so the request must be answered with
+ * {@code 431 Request Header Fields Too Large}.
+ */
+public class RequestHeaderTooLargeException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Creates a new RequestHeaderTooLargeException.
+     *
+     * @param message the detail message
+     */
+    public RequestHeaderTooLargeException(String message) {
+        super(message);
+    }
+}
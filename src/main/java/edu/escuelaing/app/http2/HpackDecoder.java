@@ -0,0 +1,231 @@
+package edu.escuelaing.app.http2;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Decodes HPACK header blocks (RFC 7541) and maintains the dynamic table
+ * shared by all header blocks of one connection. Not thread-safe; a
+ * connection decodes header blocks on its reader thread only.
+ */
+class HpackDecoder {
+    private static final int ENTRY_OVERHEAD = 32;
+
+    private final ArrayDeque<String[]> dynamicTable = new ArrayDeque<>();
+    private final int maxTableSizeLimit;
+    private int maxTableSize;
+    private int tableSize;
+
+    /**
+     * Creates a new HpackDecoder.
+     *
+     * @param maxTableSize the table size advertised in SETTINGS_HEADER_TABLE_SIZE
+     */
+    HpackDecoder(int maxTableSize) {
+        this.maxTableSizeLimit = maxTableSize;
+        this.maxTableSize = maxTableSize;
+    }
+
+    /**
+     * Decodes a complete header block.
+     *
+     * @param block  the header block fragment bytes
+     * @param length the number of valid bytes in the block
+     * @return the decoded fields as {name, value} pairs, in order
+     * @throws Http2Exception if the block is malformed
+     */
+    List<String[]> decode(byte[] block, int length) throws Http2Exception {
+        List<String[]> fields = new ArrayList<>();
+        int[] position = {0};
+        boolean fieldSeen = false;
+
+        while (position[0] < length) {
+            int first = block[position[0]] & 0xFF;
+            if ((first & 0x80) != 0) {
+                // Indexed header field
+                int index = readInteger(block, length, position, 7);
+                fields.add(new String[] {name(index), value(index)});
+                fieldSeen = true;
+            } else if ((first & 0x40) != 0) {
+                // Literal with incremental indexing
+                String[] field = readLiteral(block, length, position, 6);
+                fields.add(field);
+                insert(field);
+                fieldSeen = true;
+            } else if ((first & 0x20) != 0) {
+                // Dynamic table size update, only allowed before any field
+                if (fieldSeen) {
+                    throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Late dynamic table size update");
+                }
+                int size = readInteger(block, length, position, 5);
+                if (size > maxTableSizeLimit) {
+                    throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Table size update over limit");
+                }
+                maxTableSize = size;
+                evict();
+            } else {
+                // Literal without indexing or never indexed
+                fields.add(readLiteral(block, length, position, 4));
+                fieldSeen = true;
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Reads a literal field whose name is either indexed or a string literal.
+     *
+     * @param block    the header block
+     * @param length   the block length
+     * @param position the current read position, updated in place
+     * @param prefix   the size of the index prefix in bits
+     * @return the field as a {name, value} pair
+     * @throws Http2Exception if the literal is malformed
+     */
+    private String[] readLiteral(byte[] block, int length, int[] position, int prefix) throws Http2Exception {
+        int nameIndex = readInteger(block, length, position, prefix);
+        String name = nameIndex == 0 ? readString(block, length, position) : name(nameIndex);
+        String value = readString(block, length, position);
+        return new String[] {name, value};
+    }
+
+    /**
+     * Reads an HPACK prefix-coded integer.
+     *
+     * @param block    the header block
+     * @param length   the block length
+     * @param position the current read position, updated in place
+     * @param prefix   the size of the prefix in bits
+     * @return the decoded integer
+     * @throws Http2Exception if the integer is truncated or overflows
+     */
+    private static int readInteger(byte[] block, int length, int[] position, int prefix) throws Http2Exception {
+        int mask = (1 << prefix) - 1;
+        int value = block[position[0]++] & mask;
+        if (value < mask) {
+            return value;
+        }
+
+        int shift = 0;
+        while (true) {
+            if (position[0] >= length) {
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated integer");
+            }
+            int b = block[position[0]++] & 0xFF;
+            value += (b & 0x7F) << shift;
+            if (value < 0 || shift > 21) {
+                throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Integer overflow");
+            }
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+    }
+
+    /**
+     * Reads a string literal, decoding Huffman if flagged.
+     *
+     * @param block    the header block
+     * @param length   the block length
+     * @param position the current read position, updated in place
+     * @return the decoded string
+     * @throws Http2Exception if the string is truncated or badly encoded
+     */
+    private static String readString(byte[] block, int length, int[] position) throws Http2Exception {
+        if (position[0] >= length) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated string");
+        }
+        boolean huffman = (block[position[0]] & 0x80) != 0;
+        int size = readInteger(block, length, position, 7);
+        if (size > length - position[0]) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Truncated string");
+        }
+        int start = position[0];
+        position[0] += size;
+        if (huffman) {
+            return new String(Huffman.decode(block, start, size), StandardCharsets.ISO_8859_1);
+        }
+        return new String(block, start, size, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Adds an entry to the front of the dynamic table.
+     *
+     * @param field the field to insert
+     */
+    private void insert(String[] field) {
+        int size = entrySize(field);
+        if (size > maxTableSize) {
+            dynamicTable.clear();
+            tableSize = 0;
+            return;
+        }
+        dynamicTable.addFirst(field);
+        tableSize += size;
+        evict();
+    }
+
+    /**
+     * Drops the oldest entries until the table fits its maximum size.
+     */
+    private void evict() {
+        while (tableSize > maxTableSize) {
+            tableSize -= entrySize(dynamicTable.removeLast());
+        }
+    }
+
+    /**
+     * Gets the name of a static or dynamic table entry.
+     *
+     * @param index the 1-based index
+     * @return the header name
+     * @throws Http2Exception if the index is out of range
+     */
+    private String name(int index) throws Http2Exception {
+        return index <= HpackStaticTable.SIZE && index > 0 ? HpackStaticTable.name(index) : dynamicEntry(index)[0];
+    }
+
+    /**
+     * Gets the value of a static or dynamic table entry.
+     *
+     * @param index the 1-based index
+     * @return the header value
+     * @throws Http2Exception if the index is out of range
+     */
+    private String value(int index) throws Http2Exception {
+        return index <= HpackStaticTable.SIZE && index > 0 ? HpackStaticTable.value(index) : dynamicEntry(index)[1];
+    }
+
+    /**
+     * Looks up a dynamic table entry by its wire index.
+     *
+     * @param index the 1-based index, after the static table
+     * @return the entry
+     * @throws Http2Exception if the index is out of range
+     */
+    private String[] dynamicEntry(int index) throws Http2Exception {
+        int offset = index - HpackStaticTable.SIZE - 1;
+        if (offset < 0 || offset >= dynamicTable.size()) {
+            throw new Http2Exception(Http2Exception.COMPRESSION_ERROR, "Invalid table index " + index);
+        }
+        Iterator<String[]> entries = dynamicTable.iterator();
+        for (int i = 0; i < offset; i++) {
+            entries.next();
+        }
+        return entries.next();
+    }
+
+    /**
+     * Computes the size of an entry as defined by RFC 7541, Section 4.1.
+     *
+     * @param field the entry
+     * @return the entry size
+     */
+    private static int entrySize(String[] field) {
+        return field[0].length() + field[1].length() + ENTRY_OVERHEAD;
+    }
+}
@@ -0,0 +1,117 @@
+package edu.escuelaing.app.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import edu.escuelaing.app.http.HttpHeaders;
+
+/**
+ * Encodes response header blocks. The encoder never inserts into the dynamic
+ * table, so it keeps no state and can be shared by concurrent streams; it
+ * still uses static table indices and Huffman coding when that is shorter.
+ */
+final class HpackEncoder {
+
+    private HpackEncoder() {
+    }
+
+    /**
+     * Encodes a response header block.
+     *
+     * @param status  the response status code
+     * @param headers the response headers; connection-specific headers are
+     *                skipped
+     * @return the encoded header block
+     */
+    static byte[] encode(int status, HttpHeaders headers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(128);
+
+        String statusValue = String.valueOf(status);
+        int statusIndex = HpackStaticTable.indexOfField(":status", statusValue);
+        if (statusIndex > 0) {
+            writeInteger(out, 0x80, 7, statusIndex);
+        } else {
+            writeLiteral(out, ":status", statusValue);
+        }
+
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i).toLowerCase(Locale.ROOT);
+            if (isConnectionSpecific(name)) {
+                continue;
+            }
+            writeLiteral(out, name, headers.value(i));
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks whether a header only applies to an HTTP/1.1 connection and must
+     * not be sent over HTTP/2 (RFC 9113, Section 8.2.2).
+     *
+     * @param name the lowercase header name
+     * @return true if the header must be dropped
+     */
+    private static boolean isConnectionSpecific(String name) {
+        return name.equals("connection") || name.equals("keep-alive") || name.equals("proxy-connection")
+                || name.equals("transfer-encoding") || name.equals("upgrade");
+    }
+
+    /**
+     * Writes a literal field without indexing, using an indexed name when the
+     * static table has one.
+     *
+     * @param out   the destination
+     * @param name  the lowercase header name
+     * @param value the header value
+     */
+    private static void writeLiteral(ByteArrayOutputStream out, String name, String value) {
+        int nameIndex = HpackStaticTable.indexOfName(name);
+        writeInteger(out, 0x00, 4, nameIndex);
+        if (nameIndex == 0) {
+            writeString(out, name);
+        }
+        writeString(out, value);
+    }
+
+    /**
+     * Writes a string literal, Huffman-encoded when that is shorter.
+     *
+     * @param out   the destination
+     * @param value the string
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        int huffmanLength = Huffman.encodedLength(bytes);
+        if (huffmanLength < bytes.length) {
+            writeInteger(out, 0x80, 7, huffmanLength);
+            Huffman.encode(bytes, out);
+        } else {
+            writeInteger(out, 0x00, 7, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Writes an HPACK prefix-coded integer.
+     *
+     * @param out    the destination
+     * @param flags  the bits above the prefix in the first octet
+     * @param prefix the size of the prefix in bits
+     * @param value  the value to encode
+     */
+    private static void writeInteger(ByteArrayOutputStream out, int flags, int prefix, int value) {
+        int mask = (1 << prefix) - 1;
+        if (value < mask) {
+            out.write(flags | value);
+            return;
+        }
+        out.write(flags | mask);
+        value -= mask;
+        while (value >= 0x80) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
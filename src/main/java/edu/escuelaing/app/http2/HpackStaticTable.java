@@ -0,0 +1,132 @@
+package edu.escuelaing.app.http2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPACK static table (RFC 7541, Appendix A). Indices are 1-based as on the
+ * wire.
+ */
+final class HpackStaticTable {
+    static final int SIZE = 61;
+
+    private static final String[][] ENTRIES = {
+            {":authority", ""},
+            {":method", "GET"},
+            {":method", "POST"},
+            {":path", "/"},
+            {":path", "/index.html"},
+            {":scheme", "http"},
+            {":scheme", "https"},
+            {":status", "200"},
+            {":status", "204"},
+            {":status", "206"},
+            {":status", "304"},
+            {":status", "400"},
+            {":status", "404"},
+            {":status", "500"},
+            {"accept-charset", ""},
+            {"accept-encoding", "gzip, deflate"},
+            {"accept-language", ""},
+            {"accept-ranges", ""},
+            {"accept", ""},
+            {"access-control-allow-origin", ""},
+            {"age", ""},
+            {"allow", ""},
+            {"authorization", ""},
+            {"cache-control", ""},
+            {"content-disposition", ""},
+            {"content-encoding", ""},
+            {"content-language", ""},
+            {"content-length", ""},
+            {"content-location", ""},
+            {"content-range", ""},
+            {"content-type", ""},
+            {"cookie", ""},
+            {"date", ""},
+            {"etag", ""},
+            {"expect", ""},
+            {"expires", ""},
+            {"from", ""},
+            {"host", ""},
+            {"if-match", ""},
+            {"if-modified-since", ""},
+            {"if-none-match", ""},
+            {"if-range", ""},
+            {"if-unmodified-since", ""},
+            {"last-modified", ""},
+            {"link", ""},
+            {"location", ""},
+            {"max-forwards", ""},
+            {"proxy-authenticate", ""},
+            {"proxy-authorization", ""},
+            {"range", ""},
+            {"referer", ""},
+            {"refresh", ""},
+            {"retry-after", ""},
+            {"server", ""},
+            {"set-cookie", ""},
+            {"strict-transport-security", ""},
+            {"transfer-encoding", ""},
+            {"user-agent", ""},
+            {"vary", ""},
+            {"via", ""},
+            {"www-authenticate", ""}
+    };
+
+    private static final Map<String, Integer> NAME_INDEX = new HashMap<>();
+    private static final Map<String, Integer> FIELD_INDEX = new HashMap<>();
+
+    static {
+        for (int i = ENTRIES.length - 1; i >= 0; i--) {
+            NAME_INDEX.put(ENTRIES[i][0], i + 1);
+            FIELD_INDEX.put(ENTRIES[i][0] + ':' + ENTRIES[i][1], i + 1);
+        }
+    }
+
+    private HpackStaticTable() {
+    }
+
+    /**
+     * Gets the name of a static entry.
+     *
+     * @param index the 1-based index
+     * @return the header name
+     */
+    static String name(int index) {
+        return ENTRIES[index - 1][0];
+    }
+
+    /**
+     * Gets the value of a static entry.
+     *
+     * @param index the 1-based index
+     * @return the header value, empty if the entry has none
+     */
+    static String value(int index) {
+        return ENTRIES[index - 1][1];
+    }
+
+    /**
+     * Finds the first entry with the given lowercase name.
+     *
+     * @param name the header name
+     * @return the 1-based index or 0 if not found
+     */
+    static int indexOfName(String name) {
+        Integer index = NAME_INDEX.get(name);
+        return index != null ? index : 0;
+    }
+
+    /**
+     * Finds an entry matching both name and value.
+     *
+     * @param name  the header name
+     * @param value the header value
+     * @return the 1-based index or 0 if not found
+     */
+    static int indexOfField(String name, String value) {
+        Integer index = FIELD_INDEX.get(name + ':' + value);
+        return index != null ? index : 0;
+    }
+}
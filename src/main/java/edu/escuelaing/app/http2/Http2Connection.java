@@ -0,0 +1,1010 @@
+package edu.escuelaing.app.http2;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import edu.escuelaing.app.core.RequestHandler;
+import edu.escuelaing.app.http.HttpHeaders;
+import edu.escuelaing.app.http.HttpRequest;
+import edu.escuelaing.app.http.HttpResponse;
+import edu.escuelaing.app.jfr.WriteEvent;
+
+/**
+ * Serves one cleartext HTTP/2 (h2c) connection. Frames are read on the
+ * calling thread, while each stream is dispatched to the request handler on
+ * the stream executor so that requests on the same connection run
+ * concurrently. Responses respect the peer's flow-control windows and the
+ * number of open streams is capped at the configured maximum.
+ */
+public class Http2Connection {
+    private static final String HTTP2_SETTINGS = "HTTP2-Settings";
+    private static final byte[] CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n"
+            .getBytes(StandardCharsets.US_ASCII);
+    private static final int PREFACE_REQUEST_LINE_LENGTH = 18;
+
+    private static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+    private static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+    private static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+    private static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    private static final int DEFAULT_WINDOW_SIZE = 65535;
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+    private static final int HEADER_TABLE_SIZE = 4096;
+    private static final int MAX_HEADER_BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_REQUEST_BODY_SIZE = 1024 * 1024;
+    private static final long GRACEFUL_CLOSE_SECONDS = 5;
+
+    private final InputStream input;
+    private final OutputStream output;
+    private final RequestHandler requestHandler;
+    private final Executor streamExecutor;
+    private final int maxConcurrentStreams;
+    private final Stream upgradeStream;
+    private final byte[] upgradeSettings;
+    private final HpackDecoder decoder = new HpackDecoder(HEADER_TABLE_SIZE);
+    private final Map<Integer, Stream> streams = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final Object flowLock = new Object();
+
+    // Guarded by flowLock
+    private int connectionSendWindow = DEFAULT_WINDOW_SIZE;
+    private int initialStreamWindow = DEFAULT_WINDOW_SIZE;
+    private volatile int peerMaxFrameSize = Http2Frame.DEFAULT_MAX_FRAME_SIZE;
+    private volatile boolean closed = false;
+
+    // Only accessed by the reader thread
+    private int connectionReceiveWindow = DEFAULT_WINDOW_SIZE;
+    private int lastStreamId;
+    private int headerStreamId;
+    private boolean headerEndStream;
+    private ByteArrayOutputStream headerBlock;
+
+    /**
+     * Creates a new Http2Connection for a socket whose HTTP/1.1 request was
+     * either the prior-knowledge preface or an h2c upgrade request. Everything
+     * needed from the request and the receive buffer is copied, so both can be
+     * recycled once the constructor returns.
+     *
+     * @param inputStream          the socket input
+     * @param leftover             bytes already read from the socket past the
+     *                             HTTP/1.1 request
+     * @param outputStream         the socket output
+     * @param request              the parsed HTTP/1.1 request
+     * @param requestHandler       the handler that serves each stream
+     * @param streamExecutor       the bounded executor that runs stream
+     *                             handlers; streams it rejects are refused
+     * @param maxConcurrentStreams the maximum number of open streams
+     */
+    public Http2Connection(InputStream inputStream, ByteBuffer leftover, OutputStream outputStream,
+            HttpRequest request, RequestHandler requestHandler, Executor streamExecutor, int maxConcurrentStreams) {
+        byte[] buffered = new byte[leftover.remaining()];
+        leftover.get(buffered);
+        this.input = new BufferedInputStream(
+                new SequenceInputStream(new ByteArrayInputStream(buffered), inputStream));
+        this.output = new BufferedOutputStream(outputStream, Http2Frame.HEADER_LENGTH + peerMaxFrameSize);
+        this.requestHandler = requestHandler;
+        this.streamExecutor = streamExecutor;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+
+        if (isPriorKnowledge(request)) {
+            this.upgradeStream = null;
+            this.upgradeSettings = null;
+        } else if (isUpgrade(request)) {
+            this.upgradeStream = new Stream(1, copyUpgradeRequest(request));
+            this.upgradeSettings = decodeSettings(request.getHeaders().get(HTTP2_SETTINGS));
+        } else {
+            throw new IllegalArgumentException("Request does not ask for HTTP/2");
+        }
+    }
+
+    /**
+     * Checks whether a parsed HTTP/1.x request is actually the start of the
+     * HTTP/2 connection preface sent by a prior-knowledge client.
+     *
+     * @param request the parsed request
+     * @return true if the request line is "PRI * HTTP/2.0"
+     */
+    public static boolean isPriorKnowledge(HttpRequest request) {
+        return "PRI".equals(request.getMethod()) && "*".equals(request.getPath())
+                && "HTTP/2.0".equals(request.getHttpVersion());
+    }
+
+    /**
+     * Checks whether a request asks to upgrade the connection to h2c. A
+     * request with a malformed HTTP2-Settings header is not treated as an
+     * upgrade, so it is served over HTTP/1.1 as RFC 9113 (Section 3.2)
+     * permits.
+     *
+     * @param request the parsed request
+     * @return true if the request carries "Upgrade: h2c" and a valid
+     *         HTTP2-Settings header
+     */
+    public static boolean isUpgrade(HttpRequest request) {
+        String upgrade = request.getHeaders().get(HttpHeaders.UPGRADE);
+        return upgrade != null && decodeSettings(request.getHeaders().get(HTTP2_SETTINGS)) != null
+                && Arrays.asList(upgrade.toLowerCase(Locale.ROOT).split("\\s*,\\s*")).contains("h2c");
+    }
+
+    /**
+     * Decodes the base64url SETTINGS payload of an HTTP2-Settings header.
+     *
+     * @param encodedSettings the header value, or null
+     * @return the settings payload, or null if the header is missing or
+     *         malformed
+     */
+    private static byte[] decodeSettings(String encodedSettings) {
+        if (encodedSettings == null) {
+            return null;
+        }
+        try {
+            byte[] settings = Base64.getUrlDecoder().decode(encodedSettings.trim());
+            return settings.length % 6 == 0 ? settings : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Serves the connection until the peer goes away. For an upgrade, the
+     * 101 response is sent first and the upgrade request is answered as
+     * stream 1; for prior knowledge, the rest of the preface is verified.
+     *
+     * @throws IOException if the connection fails
+     */
+    public void serve() throws IOException {
+        if (upgradeStream == null) {
+            readPreface(PREFACE_REQUEST_LINE_LENGTH);
+            writeSettings();
+        } else {
+            synchronized (writeLock) {
+                output.write(("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n")
+                        .getBytes(StandardCharsets.US_ASCII));
+            }
+            applySettings(upgradeSettings);
+            writeSettings();
+            synchronized (flowLock) {
+                upgradeStream.sendWindow = initialStreamWindow;
+            }
+
+            lastStreamId = 1;
+            streams.put(1, upgradeStream);
+            dispatch(upgradeStream);
+            readPreface(0);
+        }
+        processFrames();
+    }
+
+    /**
+     * Reads and verifies the client connection preface.
+     *
+     * @param alreadyRead the number of preface bytes consumed by the HTTP/1.1
+     *                    parser
+     * @throws IOException if the preface is missing or wrong
+     */
+    private void readPreface(int alreadyRead) throws IOException {
+        byte[] received = new byte[CLIENT_PREFACE.length - alreadyRead];
+        Http2Frame.readFully(input, received, 0, received.length);
+        if (!Arrays.equals(received, 0, received.length, CLIENT_PREFACE, alreadyRead, CLIENT_PREFACE.length)) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid HTTP/2 connection preface");
+        }
+    }
+
+    /**
+     * Reads and processes frames until the peer goes away or an error occurs.
+     *
+     * @throws IOException if the connection fails
+     */
+    private void processFrames() throws IOException {
+        boolean graceful = false;
+        try {
+            Http2Frame frame;
+            while ((frame = Http2Frame.read(input, Http2Frame.DEFAULT_MAX_FRAME_SIZE)) != null) {
+                if (frame.getType() == Http2Frame.GOAWAY) {
+                    graceful = true;
+                    break;
+                }
+                processFrame(frame);
+            }
+        } catch (Http2Exception e) {
+            writeGoAway(e.getErrorCode());
+            throw e;
+        } finally {
+            if (graceful) {
+                awaitStreams();
+            }
+            close();
+        }
+    }
+
+    /**
+     * Dispatches a single frame by type.
+     *
+     * @param frame the frame to process
+     * @throws IOException if the frame violates the protocol or a write fails
+     */
+    private void processFrame(Http2Frame frame) throws IOException {
+        if (headerBlock != null && frame.getType() != Http2Frame.CONTINUATION) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Expected CONTINUATION frame");
+        }
+
+        switch (frame.getType()) {
+            case Http2Frame.HEADERS:
+                onHeaders(frame);
+                break;
+            case Http2Frame.CONTINUATION:
+                onContinuation(frame);
+                break;
+            case Http2Frame.DATA:
+                onData(frame);
+                break;
+            case Http2Frame.SETTINGS:
+                onSettings(frame);
+                break;
+            case Http2Frame.WINDOW_UPDATE:
+                onWindowUpdate(frame);
+                break;
+            case Http2Frame.PING:
+                onPing(frame);
+                break;
+            case Http2Frame.RST_STREAM:
+                onResetStream(frame);
+                break;
+            case Http2Frame.PUSH_PROMISE:
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Clients cannot push");
+            default:
+                // PRIORITY and unknown frame types are ignored
+                break;
+        }
+    }
+
+    /**
+     * Starts a header block for a new stream, or trailers for an open one.
+     *
+     * @param frame the HEADERS frame
+     * @throws IOException if the frame is invalid
+     */
+    private void onHeaders(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        if (streamId == 0 || (streamId & 1) == 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid stream id " + streamId);
+        }
+        if (streamId <= lastStreamId && !streams.containsKey(streamId)) {
+            throw new Http2Exception(Http2Exception.STREAM_CLOSED, "Stream " + streamId + " is closed");
+        }
+
+        byte[] payload = frame.getPayload();
+        int offset = 0;
+        int length = payload.length;
+        if (frame.hasFlag(Http2Frame.FLAG_PADDED)) {
+            int padding = length > 0 ? payload[0] & 0xFF : 0;
+            offset++;
+            length -= 1 + padding;
+        }
+        if (frame.hasFlag(Http2Frame.FLAG_PRIORITY)) {
+            offset += 5;
+            length -= 5;
+        }
+        if (length < 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Malformed HEADERS frame");
+        }
+
+        headerStreamId = streamId;
+        headerEndStream = frame.hasFlag(Http2Frame.FLAG_END_STREAM);
+        headerBlock = new ByteArrayOutputStream(length);
+        headerBlock.write(payload, offset, length);
+        if (frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            onHeaderBlock();
+        }
+    }
+
+    /**
+     * Appends a CONTINUATION fragment to the pending header block.
+     *
+     * @param frame the CONTINUATION frame
+     * @throws IOException if the frame is unexpected or the block too large
+     */
+    private void onContinuation(Http2Frame frame) throws IOException {
+        if (headerBlock == null || frame.getStreamId() != headerStreamId) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Unexpected CONTINUATION frame");
+        }
+        if (headerBlock.size() + frame.getPayload().length > MAX_HEADER_BLOCK_SIZE) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Header block too large");
+        }
+        headerBlock.write(frame.getPayload());
+        if (frame.hasFlag(Http2Frame.FLAG_END_HEADERS)) {
+            onHeaderBlock();
+        }
+    }
+
+    /**
+     * Decodes a complete header block and opens, refuses or completes the
+     * stream it belongs to.
+     *
+     * @throws IOException if decoding fails or a write fails
+     */
+    private void onHeaderBlock() throws IOException {
+        int streamId = headerStreamId;
+        boolean endStream = headerEndStream;
+        List<String[]> fields = decoder.decode(headerBlock.toByteArray(), headerBlock.size());
+        headerBlock = null;
+
+        Stream existing = streams.get(streamId);
+        if (existing != null) {
+            // Trailers: only accepted as the end of the request
+            if (!endStream || existing.dispatched) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Unexpected HEADERS on open stream");
+            }
+            dispatch(existing);
+            return;
+        }
+
+        lastStreamId = streamId;
+        if (streams.size() >= maxConcurrentStreams) {
+            writeResetStream(streamId, Http2Exception.REFUSED_STREAM);
+            return;
+        }
+
+        HttpRequest request = toRequest(fields);
+        if (request == null) {
+            writeResetStream(streamId, Http2Exception.PROTOCOL_ERROR);
+            return;
+        }
+
+        Stream stream = new Stream(streamId, request);
+        synchronized (flowLock) {
+            stream.sendWindow = initialStreamWindow;
+        }
+        streams.put(streamId, stream);
+        if (endStream) {
+            dispatch(stream);
+        } else if (request.getHeaders().getLong(HttpHeaders.CONTENT_LENGTH, 0) > MAX_REQUEST_BODY_SIZE) {
+            reject(stream);
+        }
+    }
+
+    /**
+     * Builds a request from decoded header fields.
+     *
+     * @param fields the decoded fields
+     * @return the request, or null if required pseudo-headers are missing
+     */
+    private static HttpRequest toRequest(List<String[]> fields) {
+        String method = null;
+        String path = null;
+        String authority = null;
+        HttpRequest request = new HttpRequest();
+
+        for (String[] field : fields) {
+            switch (field[0]) {
+                case ":method":
+                    method = field[1];
+                    break;
+                case ":path":
+                    path = new String(field[1].getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+                    break;
+                case ":authority":
+                    authority = field[1];
+                    break;
+                case ":scheme":
+                    break;
+                default:
+                    if (field[0].startsWith(":")) {
+                        return null;
+                    }
+                    request.getHeaders().add(field[0], field[1]);
+                    break;
+            }
+        }
+
+        if (method == null || path == null) {
+            return null;
+        }
+        if (authority != null && request.getHeaders().get(HttpHeaders.HOST) == null) {
+            request.getHeaders().add(HttpHeaders.knownName(HttpHeaders.HOST), authority);
+        }
+        request.setRequestLine(method, path, "HTTP/2.0");
+        return request;
+    }
+
+    /**
+     * Copies the upgrade request so it outlives the HTTP/1.1 exchange,
+     * dropping hop-by-hop upgrade headers.
+     *
+     * @param request the HTTP/1.1 request
+     * @return the request to serve as stream 1
+     */
+    private static HttpRequest copyUpgradeRequest(HttpRequest request) {
+        HttpRequest copy = new HttpRequest();
+        copy.setRequestLine(request.getMethod(), request.getPath(), "HTTP/2.0");
+        copy.getQueryParams().putAll(request.getQueryParams());
+        copy.setBody(request.getBody());
+
+        HttpHeaders headers = request.getHeaders();
+        for (int i = 0; i < headers.size(); i++) {
+            String name = headers.name(i);
+            if (!name.equalsIgnoreCase(HttpHeaders.knownName(HttpHeaders.CONNECTION))
+                    && !name.equalsIgnoreCase(HttpHeaders.knownName(HttpHeaders.UPGRADE))
+                    && !name.equalsIgnoreCase(HTTP2_SETTINGS)) {
+                copy.getHeaders().add(name, headers.value(i));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Buffers request body data, enforcing the receive windows this endpoint
+     * advertised. The connection window is replenished as soon as a frame has
+     * been buffered or discarded; a stream window is only replenished while
+     * the buffered body stays within {@link #MAX_REQUEST_BODY_SIZE}, so a peer
+     * that respects flow control can send at most one byte past the limit,
+     * which turns the stream into a 413 response.
+     *
+     * @param frame the DATA frame
+     * @throws IOException if the frame is invalid or a write fails
+     */
+    private void onData(Http2Frame frame) throws IOException {
+        int streamId = frame.getStreamId();
+        byte[] payload = frame.getPayload();
+        if (streamId == 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "DATA frame on stream 0");
+        }
+        if (payload.length > connectionReceiveWindow) {
+            throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Connection receive window exceeded");
+        }
+        connectionReceiveWindow -= payload.length;
+
+        Stream stream = streams.get(streamId);
+        if (stream == null || stream.dispatched) {
+            // Frames still in flight after a 413 are expected and dropped quietly
+            if (stream == null || !stream.rejected) {
+                writeResetStream(streamId, Http2Exception.STREAM_CLOSED);
+            }
+            releaseConnectionWindow(payload.length);
+            return;
+        }
+        if (payload.length > stream.receiveWindow) {
+            streams.remove(streamId);
+            writeResetStream(streamId, Http2Exception.FLOW_CONTROL_ERROR);
+            releaseConnectionWindow(payload.length);
+            return;
+        }
+        stream.receiveWindow -= payload.length;
+
+        int offset = 0;
+        int length = payload.length;
+        if (frame.hasFlag(Http2Frame.FLAG_PADDED)) {
+            int padding = length > 0 ? payload[0] & 0xFF : 0;
+            offset++;
+            length -= 1 + padding;
+            if (length < 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Malformed DATA frame");
+            }
+        }
+        if (stream.body.size() + length > MAX_REQUEST_BODY_SIZE) {
+            reject(stream);
+            releaseConnectionWindow(payload.length);
+            return;
+        }
+        stream.body.write(payload, offset, length);
+        releaseConnectionWindow(payload.length);
+
+        if (frame.hasFlag(Http2Frame.FLAG_END_STREAM)) {
+            dispatch(stream);
+            return;
+        }
+        int increment = MAX_REQUEST_BODY_SIZE + 1 - stream.body.size() - stream.receiveWindow;
+        if (increment > 0) {
+            stream.receiveWindow += increment;
+            writeWindowUpdate(streamId, increment);
+        }
+    }
+
+    /**
+     * Returns connection-level credit for a DATA frame that has been buffered
+     * or discarded.
+     *
+     * @param length the flow-controlled length of the frame
+     * @throws IOException if writing fails
+     */
+    private void releaseConnectionWindow(int length) throws IOException {
+        if (length > 0) {
+            connectionReceiveWindow += length;
+            writeWindowUpdate(0, length);
+        }
+    }
+
+    /**
+     * Applies peer settings and acknowledges them.
+     *
+     * @param frame the SETTINGS frame
+     * @throws IOException if the frame is invalid or a write fails
+     */
+    private void onSettings(Http2Frame frame) throws IOException {
+        if (frame.getStreamId() != 0) {
+            throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "SETTINGS frame on a stream");
+        }
+        if (frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            return;
+        }
+        applySettings(frame.getPayload());
+        synchronized (writeLock) {
+            Http2Frame.write(output, Http2Frame.SETTINGS, Http2Frame.FLAG_ACK, 0, new byte[0], 0, 0);
+            output.flush();
+        }
+        // A larger initial window may unblock every stream at once
+        for (Stream stream : streams.values()) {
+            sendPendingData(stream);
+        }
+    }
+
+    /**
+     * Applies a SETTINGS payload sent by the peer.
+     *
+     * @param payload the settings payload
+     * @throws Http2Exception if a setting has an invalid value
+     */
+    private void applySettings(byte[] payload) throws Http2Exception {
+        if (payload.length % 6 != 0) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Malformed SETTINGS frame");
+        }
+        for (int i = 0; i < payload.length; i += 6) {
+            int id = ((payload[i] & 0xFF) << 8) | (payload[i + 1] & 0xFF);
+            int value = Http2Frame.readInt(payload, i + 2);
+            if (id == SETTINGS_INITIAL_WINDOW_SIZE) {
+                if (value < 0) {
+                    throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Initial window size too large");
+                }
+                synchronized (flowLock) {
+                    int delta = value - initialStreamWindow;
+                    initialStreamWindow = value;
+                    for (Stream stream : streams.values()) {
+                        stream.sendWindow += delta;
+                    }
+                    flowLock.notifyAll();
+                }
+            } else if (id == SETTINGS_MAX_FRAME_SIZE) {
+                if (value < Http2Frame.DEFAULT_MAX_FRAME_SIZE || value > 0xFFFFFF) {
+                    throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Invalid max frame size");
+                }
+                peerMaxFrameSize = value;
+            }
+            // Header table size is irrelevant because the encoder never indexes
+        }
+    }
+
+    /**
+     * Grows a send window and resumes the responses that were waiting for
+     * credit.
+     *
+     * @param frame the WINDOW_UPDATE frame
+     * @throws IOException if the increment is invalid or a write fails
+     */
+    private void onWindowUpdate(Http2Frame frame) throws IOException {
+        if (frame.getPayload().length != 4) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Malformed WINDOW_UPDATE frame");
+        }
+        int increment = Http2Frame.readInt(frame.getPayload(), 0) & 0x7FFFFFFF;
+        int streamId = frame.getStreamId();
+        if (increment == 0) {
+            if (streamId == 0) {
+                throw new Http2Exception(Http2Exception.PROTOCOL_ERROR, "Zero window increment");
+            }
+            writeResetStream(streamId, Http2Exception.PROTOCOL_ERROR);
+            return;
+        }
+
+        Stream stream = null;
+        synchronized (flowLock) {
+            if (streamId == 0) {
+                if (connectionSendWindow > MAX_WINDOW_SIZE - increment) {
+                    throw new Http2Exception(Http2Exception.FLOW_CONTROL_ERROR, "Connection window overflow");
+                }
+                connectionSendWindow += increment;
+            } else {
+                stream = streams.get(streamId);
+                if (stream == null) {
+                    return;
+                }
+                if (stream.sendWindow > MAX_WINDOW_SIZE - increment) {
+                    stream.reset = true;
+                    writeResetStream(streamId, Http2Exception.FLOW_CONTROL_ERROR);
+                }
+                stream.sendWindow += increment;
+            }
+        }
+
+        if (stream != null) {
+            sendPendingData(stream);
+        } else {
+            for (Stream blocked : streams.values()) {
+                sendPendingData(blocked);
+            }
+        }
+    }
+
+    /**
+     * Answers a PING.
+     *
+     * @param frame the PING frame
+     * @throws IOException if the frame is invalid or a write fails
+     */
+    private void onPing(Http2Frame frame) throws IOException {
+        if (frame.getPayload().length != 8) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Malformed PING frame");
+        }
+        if (frame.hasFlag(Http2Frame.FLAG_ACK)) {
+            return;
+        }
+        synchronized (writeLock) {
+            Http2Frame.write(output, Http2Frame.PING, Http2Frame.FLAG_ACK, 0, frame.getPayload(), 0, 8);
+            output.flush();
+        }
+    }
+
+    /**
+     * Cancels a stream at the peer's request.
+     *
+     * @param frame the RST_STREAM frame
+     */
+    private void onResetStream(Http2Frame frame) {
+        Stream stream = streams.remove(frame.getStreamId());
+        if (stream != null) {
+            synchronized (flowLock) {
+                stream.reset = true;
+                flowLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Hands a fully received request to the stream executor.
+     *
+     * @param stream the stream to serve
+     * @throws IOException if the stream is refused and the reset cannot be
+     *                     written
+     */
+    private void dispatch(Stream stream) throws IOException {
+        stream.dispatched = true;
+        if (stream.body.size() > 0) {
+            stream.request.setBody(stream.body.toString(StandardCharsets.UTF_8));
+        }
+        execute(stream);
+    }
+
+    /**
+     * Schedules the response of a stream. When the shared stream executor is
+     * saturated the stream is refused with REFUSED_STREAM, which tells the
+     * client the request was not processed and may be retried.
+     *
+     * @param stream the stream to serve
+     * @throws IOException if the reset cannot be written
+     */
+    private void execute(Stream stream) throws IOException {
+        try {
+            streamExecutor.execute(() -> respond(stream));
+        } catch (RejectedExecutionException e) {
+            streams.remove(stream.id);
+            writeResetStream(stream.id, Http2Exception.REFUSED_STREAM);
+        }
+    }
+
+    /**
+     * Refuses a request whose body exceeds {@link #MAX_REQUEST_BODY_SIZE}.
+     * The stream is answered with 413 and then reset with NO_ERROR so the
+     * peer stops sending the rest of the body.
+     *
+     * @param stream the stream to refuse
+     * @throws IOException if the stream is refused and the reset cannot be
+     *                     written
+     */
+    private void reject(Stream stream) throws IOException {
+        stream.dispatched = true;
+        stream.rejected = true;
+        stream.body.reset();
+        execute(stream);
+    }
+
+    /**
+     * Runs the request handler for a stream and writes its response. The
+     * body is sent as far as the flow-control windows allow; if credit runs
+     * out, the rest is left on the stream and the reader thread sends it when
+     * the peer grants more, so a peer that withholds credit never holds an
+     * executor thread.
+     *
+     * @param stream the stream to serve
+     */
+    private void respond(Stream stream) {
+        HttpResponse response = new HttpResponse();
+        try {
+            if (stream.rejected) {
+                response.setStatus(413, "Content Too Large");
+                response.setBody("<html><body><h1>413 - Content Too Large</h1></body></html>");
+            } else {
+                requestHandler.handle(stream.request, response);
+            }
+            if (response.getEventStream() != null) {
+                response = new HttpResponse();
+                response.setStatus(501, "Not Implemented");
+                response.setBody("<html><body><h1>501 - Event streams require HTTP/1.1</h1></body></html>");
+            }
+
+            stream.writeEvent.begin();
+            byte[] body = response.getBodyBytes();
+            byte[] headerBlock = HpackEncoder.encode(response.getStatusCode(), response.getHeaders());
+            stream.status = response.getStatusCode();
+            stream.bytesWritten = headerBlock.length + body.length;
+            writeHeaders(stream.id, headerBlock, body.length == 0);
+            synchronized (stream) {
+                stream.pendingBody = body;
+            }
+            sendPendingData(stream);
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Error writing HTTP/2 stream " + stream.id + ": " + e.getMessage());
+            }
+            finish(stream);
+        }
+    }
+
+    /**
+     * Completes a stream: records its write event if the whole response was
+     * sent, resets a rejected stream and forgets the stream.
+     *
+     * @param stream the stream whose response has ended
+     */
+    private void finish(Stream stream) {
+        try {
+            if (stream.completed) {
+                WriteEvent writeEvent = stream.writeEvent;
+                writeEvent.end();
+                if (writeEvent.shouldCommit()) {
+                    writeEvent.route = stream.request.getMethod() + " " + stream.request.getPath();
+                    writeEvent.status = stream.status;
+                    writeEvent.bytesWritten = stream.bytesWritten;
+                    writeEvent.commit();
+                }
+                if (stream.rejected) {
+                    writeResetStream(stream.id, Http2Exception.NO_ERROR);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Error resetting HTTP/2 stream " + stream.id + ": " + e.getMessage());
+            }
+        } finally {
+            streams.remove(stream.id);
+            synchronized (flowLock) {
+                flowLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Writes a header block as a HEADERS frame followed by CONTINUATION frames
+     * if it exceeds the peer's maximum frame size.
+     *
+     * @param streamId  the stream id
+     * @param block     the encoded header block
+     * @param endStream whether the response has no body
+     * @throws IOException if writing fails
+     */
+    private void writeHeaders(int streamId, byte[] block, boolean endStream) throws IOException {
+        int maxFrameSize = peerMaxFrameSize;
+        synchronized (writeLock) {
+            int offset = 0;
+            int type = Http2Frame.HEADERS;
+            do {
+                int length = Math.min(block.length - offset, maxFrameSize);
+                int flags = offset + length == block.length ? Http2Frame.FLAG_END_HEADERS : 0;
+                if (type == Http2Frame.HEADERS && endStream) {
+                    flags |= Http2Frame.FLAG_END_STREAM;
+                }
+                Http2Frame.write(output, type, flags, streamId, block, offset, length);
+                offset += length;
+                type = Http2Frame.CONTINUATION;
+            } while (offset < block.length);
+            output.flush();
+        }
+    }
+
+    /**
+     * Writes as much of a stream's pending response body as the flow-control
+     * windows allow, and finishes the stream once the body is complete or the
+     * stream was reset. Does nothing if the stream has no pending body. Runs
+     * on the executor thread that produced the response and on the reader
+     * thread when credit arrives; the stream's monitor keeps the DATA frames
+     * of one stream in order.
+     *
+     * @param stream the stream
+     * @throws IOException if writing fails
+     */
+    private void sendPendingData(Stream stream) throws IOException {
+        synchronized (stream) {
+            byte[] body = stream.pendingBody;
+            if (body == null) {
+                return;
+            }
+            while (true) {
+                int offset = stream.pendingOffset;
+                int length;
+                synchronized (flowLock) {
+                    if (closed || stream.reset) {
+                        break;
+                    }
+                    if (offset == body.length) {
+                        stream.completed = true;
+                        break;
+                    }
+                    if (connectionSendWindow <= 0 || stream.sendWindow <= 0) {
+                        // Resumed by the reader thread when WINDOW_UPDATE or SETTINGS adds credit
+                        return;
+                    }
+                    length = Math.min(body.length - offset,
+                            Math.min(peerMaxFrameSize, Math.min(connectionSendWindow, stream.sendWindow)));
+                    connectionSendWindow -= length;
+                    stream.sendWindow -= length;
+                }
+
+                int flags = offset + length == body.length ? Http2Frame.FLAG_END_STREAM : 0;
+                synchronized (writeLock) {
+                    Http2Frame.write(output, Http2Frame.DATA, flags, stream.id, body, offset, length);
+                    output.flush();
+                }
+                stream.pendingOffset = offset + length;
+            }
+            stream.pendingBody = null;
+        }
+        finish(stream);
+    }
+
+    /**
+     * Sends this endpoint's SETTINGS frame.
+     *
+     * @throws IOException if writing fails
+     */
+    private void writeSettings() throws IOException {
+        byte[] payload = new byte[12];
+        payload[1] = SETTINGS_MAX_CONCURRENT_STREAMS;
+        Http2Frame.writeInt(payload, 2, maxConcurrentStreams);
+        payload[7] = SETTINGS_HEADER_TABLE_SIZE;
+        Http2Frame.writeInt(payload, 8, HEADER_TABLE_SIZE);
+        synchronized (writeLock) {
+            Http2Frame.write(output, Http2Frame.SETTINGS, 0, 0, payload, 0, payload.length);
+            output.flush();
+        }
+    }
+
+    /**
+     * Sends a WINDOW_UPDATE frame.
+     *
+     * @param streamId  the stream id, 0 for the connection
+     * @param increment the window increment
+     * @throws IOException if writing fails
+     */
+    private void writeWindowUpdate(int streamId, int increment) throws IOException {
+        byte[] payload = new byte[4];
+        Http2Frame.writeInt(payload, 0, increment);
+        synchronized (writeLock) {
+            Http2Frame.write(output, Http2Frame.WINDOW_UPDATE, 0, streamId, payload, 0, payload.length);
+            output.flush();
+        }
+    }
+
+    /**
+     * Sends an RST_STREAM frame.
+     *
+     * @param streamId  the stream id
+     * @param errorCode the error code
+     * @throws IOException if writing fails
+     */
+    private void writeResetStream(int streamId, int errorCode) throws IOException {
+        byte[] payload = new byte[4];
+        Http2Frame.writeInt(payload, 0, errorCode);
+        synchronized (writeLock) {
+            Http2Frame.write(output, Http2Frame.RST_STREAM, 0, streamId, payload, 0, payload.length);
+            output.flush();
+        }
+    }
+
+    /**
+     * Sends a GOAWAY frame, ignoring write failures.
+     *
+     * @param errorCode the error code
+     */
+    private void writeGoAway(int errorCode) {
+        byte[] payload = new byte[8];
+        Http2Frame.writeInt(payload, 0, lastStreamId);
+        Http2Frame.writeInt(payload, 4, errorCode);
+        try {
+            synchronized (writeLock) {
+                Http2Frame.write(output, Http2Frame.GOAWAY, 0, 0, payload, 0, payload.length);
+                output.flush();
+            }
+        } catch (IOException e) {
+            // The connection is being torn down anyway
+        }
+    }
+
+    /**
+     * Waits a bounded time for in-flight streams to finish after the peer
+     * sent GOAWAY.
+     */
+    private void awaitStreams() {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(GRACEFUL_CLOSE_SECONDS);
+        synchronized (flowLock) {
+            while (!streams.isEmpty() && System.nanoTime() < deadline) {
+                try {
+                    flowLock.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks the connection closed, which drops any response data still
+     * waiting for credit, and wakes up a pending graceful close.
+     */
+    private void close() {
+        synchronized (flowLock) {
+            closed = true;
+            flowLock.notifyAll();
+        }
+    }
+
+    /**
+     * State of a single stream.
+     */
+    private static class Stream {
+        private final int id;
+        private final HttpRequest request;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final WriteEvent writeEvent = new WriteEvent();
+        private volatile boolean dispatched;
+        private boolean rejected;
+
+        // Only accessed by the reader thread
+        private int receiveWindow = DEFAULT_WINDOW_SIZE;
+
+        // Guarded by flowLock
+        private int sendWindow = DEFAULT_WINDOW_SIZE;
+        private boolean reset;
+
+        // Guarded by the stream's own monitor
+        private byte[] pendingBody;
+        private int pendingOffset;
+        private boolean completed;
+        private int status;
+        private long bytesWritten;
+
+        /**
+         * Creates a new Stream.
+         *
+         * @param id      the stream id
+         * @param request the request received on the stream
+         */
+        Stream(int id, HttpRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+    }
+}
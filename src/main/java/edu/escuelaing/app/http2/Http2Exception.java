@@ -0,0 +1,43 @@
+package edu.escuelaing.app.http2;
+
+import java.io.IOException;
+
+/**
+ * Signals an HTTP/2 protocol violation, carrying the error code to report to
+ * the peer in a GOAWAY or RST_STREAM frame.
+ */
+public class Http2Exception extends IOException {
+    public static final int NO_ERROR = 0x0;
+    public static final int PROTOCOL_ERROR = 0x1;
+    public static final int INTERNAL_ERROR = 0x2;
+    public static final int FLOW_CONTROL_ERROR = 0x3;
+    public static final int STREAM_CLOSED = 0x5;
+    public static final int FRAME_SIZE_ERROR = 0x6;
+    public static final int REFUSED_STREAM = 0x7;
+    public static final int CANCEL = 0x8;
+    public static final int COMPRESSION_ERROR = 0x9;
+
+    private static final long serialVersionUID = 1L;
+
+    private final int errorCode;
+
+    /**
+     * Creates a new Http2Exception.
+     *
+     * @param errorCode the HTTP/2 error code
+     * @param message   the detail message
+     */
+    public Http2Exception(int errorCode, String message) {
+        super(message);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Gets the HTTP/2 error code.
+     *
+     * @return the error code
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+}
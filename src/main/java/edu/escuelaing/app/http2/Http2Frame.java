@@ -0,0 +1,200 @@
+package edu.escuelaing.app.http2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A single HTTP/2 frame together with the binary codec for the 9-octet frame
+ * header (RFC 9113, Section 4.1).
+ */
+class Http2Frame {
+    static final int HEADER_LENGTH = 9;
+    static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    static final int DATA = 0x0;
+    static final int HEADERS = 0x1;
+    static final int PRIORITY = 0x2;
+    static final int RST_STREAM = 0x3;
+    static final int SETTINGS = 0x4;
+    static final int PUSH_PROMISE = 0x5;
+    static final int PING = 0x6;
+    static final int GOAWAY = 0x7;
+    static final int WINDOW_UPDATE = 0x8;
+    static final int CONTINUATION = 0x9;
+
+    static final int FLAG_END_STREAM = 0x1;
+    static final int FLAG_ACK = 0x1;
+    static final int FLAG_END_HEADERS = 0x4;
+    static final int FLAG_PADDED = 0x8;
+    static final int FLAG_PRIORITY = 0x20;
+
+    private final int type;
+    private final int flags;
+    private final int streamId;
+    private final byte[] payload;
+
+    /**
+     * Creates a new Http2Frame.
+     *
+     * @param type     the frame type
+     * @param flags    the frame flags
+     * @param streamId the stream identifier, 0 for connection frames
+     * @param payload  the frame payload
+     */
+    Http2Frame(int type, int flags, int streamId, byte[] payload) {
+        this.type = type;
+        this.flags = flags;
+        this.streamId = streamId;
+        this.payload = payload;
+    }
+
+    /**
+     * Reads the next frame from the input stream.
+     *
+     * @param inputStream  the connection input
+     * @param maxFrameSize the largest payload this endpoint accepts
+     * @return the frame, or null if the peer closed the connection cleanly
+     * @throws IOException if reading fails or the frame is too large
+     */
+    static Http2Frame read(InputStream inputStream, int maxFrameSize) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int first = inputStream.read();
+        if (first < 0) {
+            return null;
+        }
+        header[0] = (byte) first;
+        readFully(inputStream, header, 1, HEADER_LENGTH - 1);
+
+        int length = ((header[0] & 0xFF) << 16) | ((header[1] & 0xFF) << 8) | (header[2] & 0xFF);
+        if (length > maxFrameSize) {
+            throw new Http2Exception(Http2Exception.FRAME_SIZE_ERROR, "Frame of " + length + " bytes is too large");
+        }
+        int type = header[3] & 0xFF;
+        int flags = header[4] & 0xFF;
+        int streamId = readInt(header, 5) & 0x7FFFFFFF;
+
+        byte[] payload = new byte[length];
+        readFully(inputStream, payload, 0, length);
+        return new Http2Frame(type, flags, streamId, payload);
+    }
+
+    /**
+     * Writes a frame to the output stream. The caller must hold the
+     * connection write lock.
+     *
+     * @param outputStream the connection output
+     * @param type         the frame type
+     * @param flags        the frame flags
+     * @param streamId     the stream identifier
+     * @param payload      the payload bytes
+     * @param offset       the start of the payload in the array
+     * @param length       the payload length
+     * @throws IOException if writing fails
+     */
+    static void write(OutputStream outputStream, int type, int flags, int streamId, byte[] payload, int offset,
+            int length) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = (byte) (length >>> 16);
+        header[1] = (byte) (length >>> 8);
+        header[2] = (byte) length;
+        header[3] = (byte) type;
+        header[4] = (byte) flags;
+        writeInt(header, 5, streamId & 0x7FFFFFFF);
+        outputStream.write(header);
+        outputStream.write(payload, offset, length);
+    }
+
+    /**
+     * Reads exactly the requested number of bytes.
+     *
+     * @param inputStream the input
+     * @param target      the destination array
+     * @param offset      the destination offset
+     * @param length      the number of bytes to read
+     * @throws IOException if the stream ends early
+     */
+    static void readFully(InputStream inputStream, byte[] target, int offset, int length) throws IOException {
+        while (length > 0) {
+            int read = inputStream.read(target, offset, length);
+            if (read < 0) {
+                throw new EOFException("Connection closed in the middle of a frame");
+            }
+            offset += read;
+            length -= read;
+        }
+    }
+
+    /**
+     * Reads a big-endian 32-bit integer.
+     *
+     * @param data   the source array
+     * @param offset the start offset
+     * @return the integer value
+     */
+    static int readInt(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Writes a big-endian 32-bit integer.
+     *
+     * @param data   the destination array
+     * @param offset the start offset
+     * @param value  the value to write
+     */
+    static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Gets the frame type.
+     *
+     * @return the frame type
+     */
+    int getType() {
+        return type;
+    }
+
+    /**
+     * Gets the frame flags.
+     *
+     * @return the flags
+     */
+    int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Checks whether a flag is set.
+     *
+     * @param flag the flag to test
+     * @return true if the flag is set
+     */
+    boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Gets the stream identifier.
+     *
+     * @return the stream id
+     */
+    int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Gets the frame payload.
+     *
+     * @return the payload bytes
+     */
+    byte[] getPayload() {
+        return payload;
+    }
+}
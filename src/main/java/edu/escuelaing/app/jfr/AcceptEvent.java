@@ -0,0 +1,26 @@
+package edu.escuelaing.app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning the time an accepted connection waited in
+ * the executor queue. It begins on the accept thread and ends when a worker
+ * thread picks the connection up, so its duration is the queue wait and the
+ * usual threshold setting applies to it.
+ */
+@Name("edu.escuelaing.app.Accept")
+@Label("Accept")
+@Category({"Web Server", "HTTP"})
+@Description("Time an accepted connection waited for a worker thread")
+@StackTrace(false)
+@Enabled(false)
+public class AcceptEvent extends Event {
+    @Label("Remote Address")
+    public String remoteAddress;
+}
@@ -0,0 +1,30 @@
+package edu.escuelaing.app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the invocation of a controller method and
+ * the conversion of its result into the response.
+ */
+@Name("edu.escuelaing.app.Invoke")
+@Label("Invoke")
+@Category({"Web Server", "HTTP"})
+@Description("Invocation of the controller method serving a request")
+@StackTrace(false)
+@Enabled(false)
+public class InvokeEvent extends Event {
+    @Label("Route")
+    public String route;
+
+    @Label("Handler")
+    public String handler;
+
+    @Label("Status")
+    public int status;
+}
@@ -0,0 +1,32 @@
+package edu.escuelaing.app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the reading and parsing of an HTTP/1.x
+ * request, including the time spent waiting for the client to send it.
+ */
+@Name("edu.escuelaing.app.Parse")
+@Label("Parse")
+@Category({"Web Server", "HTTP"})
+@Description("Reading and parsing of an HTTP request")
+@StackTrace(false)
+@Enabled(false)
+public class ParseEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytesRead;
+}
@@ -0,0 +1,212 @@
+package edu.escuelaing.app.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Turns a Flight Recorder file into a per-phase latency breakdown of the
+ * requests served while it was recording. Every phase is measured by the
+ * event duration; for the accept phase that is the time the connection
+ * waited for a worker thread.
+ *
+ * <pre>
+ * java -cp target/classes edu.escuelaing.app.jfr.PhaseAnalyzer server.jfr
+ * </pre>
+ */
+public class PhaseAnalyzer {
+    private static final String EVENT_PREFIX = "edu.escuelaing.app.";
+    private static final String[] PHASES = {"Accept", "Parse", "Route", "Invoke", "Write"};
+
+    private final Map<String, Samples> phases = new TreeMap<>();
+    private final Map<String, Map<String, Samples>> routes = new TreeMap<>();
+
+    /**
+     * Entry point of the analyzer.
+     *
+     * @param args the path of the recording to analyze
+     * @throws IOException if the recording cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java edu.escuelaing.app.jfr.PhaseAnalyzer <recording.jfr>");
+            System.exit(1);
+        }
+        PhaseAnalyzer analyzer = new PhaseAnalyzer();
+        analyzer.read(Paths.get(args[0]));
+        analyzer.print();
+    }
+
+    /**
+     * Reads every request phase event from a recording.
+     *
+     * @param recording the recording file
+     * @throws IOException if the recording cannot be read
+     */
+    public void read(Path recording) throws IOException {
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                String name = event.getEventType().getName();
+                if (name.startsWith(EVENT_PREFIX)) {
+                    record(name.substring(EVENT_PREFIX.length()), event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds one event to the phase and route statistics.
+     *
+     * @param phase the phase name
+     * @param event the recorded event
+     */
+    private void record(String phase, RecordedEvent event) {
+        String route;
+        switch (phase) {
+            case "Accept":
+                route = null;
+                break;
+            case "Parse":
+            case "Route":
+                route = event.getString("method") + " " + event.getString("path");
+                break;
+            case "Invoke":
+            case "Write":
+                route = event.getString("route");
+                break;
+            default:
+                return;
+        }
+        long nanos = event.getDuration().toNanos();
+        phases.computeIfAbsent(phase, key -> new Samples()).add(nanos);
+        if (route != null) {
+            routes.computeIfAbsent(route, key -> new TreeMap<>())
+                    .computeIfAbsent(phase, key -> new Samples()).add(nanos);
+        }
+    }
+
+    /**
+     * Prints the per-phase and per-route breakdown to standard output.
+     */
+    public void print() {
+        if (phases.isEmpty()) {
+            System.out.println("No web server events found; record with the webserver.jfc settings");
+            return;
+        }
+        System.out.println("Per-phase latency (ms)");
+        printHeader("Phase");
+        for (String phase : PHASES) {
+            Samples samples = phases.get(phase);
+            if (samples != null) {
+                printRow(phase, samples);
+            }
+        }
+
+        for (Map.Entry<String, Map<String, Samples>> route : routes.entrySet()) {
+            System.out.println();
+            System.out.println("Route " + route.getKey());
+            printHeader("Phase");
+            for (String phase : PHASES) {
+                Samples samples = route.getValue().get(phase);
+                if (samples != null) {
+                    printRow(phase, samples);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the column titles of a breakdown table.
+     *
+     * @param label the title of the first column
+     */
+    private static void printHeader(String label) {
+        System.out.printf("%-8s %9s %10s %10s %10s %10s %10s%n", label, "count", "mean", "p50", "p90", "p99", "max");
+    }
+
+    /**
+     * Prints one row of a breakdown table.
+     *
+     * @param label   the row label
+     * @param samples the latencies of the row
+     */
+    private static void printRow(String label, Samples samples) {
+        System.out.printf("%-8s %9d %10.3f %10.3f %10.3f %10.3f %10.3f%n", label, samples.count(),
+                millis(samples.mean()), millis(samples.percentile(50)), millis(samples.percentile(90)),
+                millis(samples.percentile(99)), millis(samples.percentile(100)));
+    }
+
+    /**
+     * Converts nanoseconds to milliseconds.
+     *
+     * @param nanos the duration in nanoseconds
+     * @return the duration in milliseconds
+     */
+    private static double millis(double nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * Latency samples of one phase, in nanoseconds.
+     */
+    private static class Samples {
+        private final List<Long> values = new ArrayList<>();
+        private long[] sorted;
+
+        /**
+         * Adds a sample.
+         *
+         * @param nanos the latency in nanoseconds
+         */
+        void add(long nanos) {
+            values.add(nanos);
+            sorted = null;
+        }
+
+        /**
+         * Gets the number of samples.
+         *
+         * @return the sample count
+         */
+        int count() {
+            return values.size();
+        }
+
+        /**
+         * Gets the arithmetic mean of the samples.
+         *
+         * @return the mean in nanoseconds
+         */
+        double mean() {
+            long total = 0;
+            for (long value : values) {
+                total += value;
+            }
+            return (double) total / values.size();
+        }
+
+        /**
+         * Gets a percentile of the samples using the nearest-rank method.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the sample at that rank in nanoseconds
+         */
+        double percentile(double percentile) {
+            if (sorted == null) {
+                sorted = values.stream().mapToLong(Long::longValue).toArray();
+                Arrays.sort(sorted);
+            }
+            int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+        }
+    }
+}
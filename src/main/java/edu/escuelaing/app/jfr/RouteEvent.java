@@ -0,0 +1,30 @@
+package edu.escuelaing.app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the lookup of the controller method that
+ * serves a request.
+ */
+@Name("edu.escuelaing.app.Route")
+@Label("Route")
+@Category({"Web Server", "HTTP"})
+@Description("Lookup of the route that serves a request")
+@StackTrace(false)
+@Enabled(false)
+public class RouteEvent extends Event {
+    @Label("Method")
+    public String method;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Matched")
+    public boolean matched;
+}
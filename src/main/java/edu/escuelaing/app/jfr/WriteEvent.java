@@ -0,0 +1,31 @@
+package edu.escuelaing.app.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event covering the serialization and sending of a response.
+ */
+@Name("edu.escuelaing.app.Write")
+@Label("Write")
+@Category({"Web Server", "HTTP"})
+@Description("Serialization and sending of an HTTP response")
+@StackTrace(false)
+@Enabled(false)
+public class WriteEvent extends Event {
+    @Label("Route")
+    public String route;
+
+    @Label("Status")
+    public int status;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+}
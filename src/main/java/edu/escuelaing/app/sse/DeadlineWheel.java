@@ -0,0 +1,85 @@
+package edu.escuelaing.app.sse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel that groups deadlines into ticks of a fixed width. An
+ * entry fires on the first tick at or after its deadline, so it is never
+ * early and at most one tick late, and a pass only touches the entries of the
+ * ticks that have elapsed. Entries cannot be cancelled; the action decides
+ * whether a fired entry is still relevant. Not thread-safe.
+ *
+ * @param <T> the type of the scheduled entries
+ */
+class DeadlineWheel<T> {
+    private final long tickNanos;
+    private final long origin;
+    private final List<ArrayList<T>> slots;
+    private ArrayList<T> spare = new ArrayList<>();
+    private long nextTick = 1;
+
+    /**
+     * Creates a new DeadlineWheel.
+     *
+     * @param tickNanos the width of a tick in nanoseconds
+     * @param slotCount the number of ticks the wheel reaches ahead
+     * @param now       the current time in nanoseconds
+     */
+    DeadlineWheel(long tickNanos, int slotCount, long now) {
+        if (slotCount < 2) {
+            throw new IllegalArgumentException("A wheel needs at least two slots");
+        }
+        this.tickNanos = Math.max(1, tickNanos);
+        this.origin = now;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Schedules an entry. A deadline beyond the reach of the wheel fires on
+     * the farthest tick instead, so the action must be prepared to schedule
+     * the entry again.
+     *
+     * @param entry    the entry to schedule
+     * @param deadline the time in nanoseconds at which the entry falls due
+     */
+    void schedule(T entry, long deadline) {
+        long tick = -Math.floorDiv(origin - deadline, tickNanos);
+        tick = Math.min(Math.max(tick, nextTick), nextTick + slots.size() - 1);
+        slots.get((int) (tick % slots.size())).add(entry);
+    }
+
+    /**
+     * Gets the time of the next tick.
+     *
+     * @return the time in nanoseconds at which the next tick elapses
+     */
+    long nextExpiry() {
+        return origin + nextTick * tickNanos;
+    }
+
+    /**
+     * Fires every entry of the ticks that have elapsed. The action may
+     * schedule entries again; they land on later ticks.
+     *
+     * @param now    the current time in nanoseconds
+     * @param action the action applied to each fired entry
+     */
+    void expire(long now, Consumer<T> action) {
+        while (now - nextExpiry() >= 0) {
+            int index = (int) (nextTick % slots.size());
+            ArrayList<T> due = slots.get(index);
+            slots.set(index, spare);
+            nextTick++;
+            for (int i = 0; i < due.size(); i++) {
+                action.accept(due.get(i));
+            }
+            due.clear();
+            spare = due;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package edu.escuelaing.app.sse;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named broadcast channel for Server-Sent Events. A controller method mapped
+ * with {@code @GetMapping} that returns an EventChannel subscribes the calling
+ * connection to it; the connection then stays open and receives every event
+ * published afterwards. Each published event is encoded once and the same
+ * buffer is written to all subscribers.
+ */
+public class EventChannel {
+    private final String name;
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private volatile SseDispatcher dispatcher;
+
+    // Only accessed from the dispatcher thread
+    final List<Subscriber> subscribers = new ArrayList<>();
+
+    /**
+     * Creates a new EventChannel.
+     *
+     * @param name the channel name, used in logs
+     */
+    public EventChannel(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Publishes a data-only event to all subscribers.
+     *
+     * @param data the event payload
+     */
+    public void publish(String data) {
+        publish(new ServerSentEvent(data));
+    }
+
+    /**
+     * Publishes an event to all subscribers. The call returns immediately;
+     * delivery happens on the dispatcher thread. Events published while the
+     * channel has no subscribers are discarded.
+     *
+     * @param event the event to publish
+     */
+    public void publish(ServerSentEvent event) {
+        SseDispatcher current = dispatcher;
+        if (current == null || subscriberCount.get() == 0) {
+            return;
+        }
+        current.publish(this, event.encode());
+    }
+
+    /**
+     * Binds the channel to the dispatcher that owns its subscribers.
+     *
+     * @param sseDispatcher the dispatcher
+     */
+    synchronized void bind(SseDispatcher sseDispatcher) {
+        if (dispatcher == null) {
+            dispatcher = sseDispatcher;
+        } else if (dispatcher != sseDispatcher) {
+            throw new IllegalStateException("Event channel " + name + " is already bound to another server");
+        }
+    }
+
+    /**
+     * Adds a subscriber. Called on the dispatcher thread.
+     *
+     * @param subscriber the subscriber to add
+     */
+    void add(Subscriber subscriber) {
+        subscriber.slot = subscribers.size();
+        subscribers.add(subscriber);
+        subscriberCount.incrementAndGet();
+    }
+
+    /**
+     * Removes a subscriber in constant time. Called on the dispatcher thread.
+     *
+     * @param subscriber the subscriber to remove
+     */
+    void remove(Subscriber subscriber) {
+        int slot = subscriber.slot;
+        if (slot < 0) {
+            return;
+        }
+        Subscriber last = subscribers.remove(subscribers.size() - 1);
+        if (last != subscriber) {
+            subscribers.set(slot, last);
+            last.slot = slot;
+        }
+        subscriber.slot = -1;
+        subscriberCount.decrementAndGet();
+    }
+
+    /**
+     * Fans an encoded event out to every subscriber. Called on the dispatcher
+     * thread.
+     *
+     * @param frame the encoded event
+     */
+    void deliver(ByteBuffer frame) {
+        // Iterate backwards so evictions do not skip subscribers
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            subscribers.get(i).offer(frame);
+        }
+    }
+
+    /**
+     * Gets the channel name.
+     *
+     * @return the channel name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the number of connected subscribers.
+     *
+     * @return the subscriber count
+     */
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+}
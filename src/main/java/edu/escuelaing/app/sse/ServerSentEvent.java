@@ -0,0 +1,115 @@
+package edu.escuelaing.app.sse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Represents a single Server-Sent Event with optional id and event type.
+ */
+public class ServerSentEvent {
+    private final String id;
+    private final String event;
+    private final String data;
+
+    /**
+     * Creates a new unnamed ServerSentEvent.
+     *
+     * @param data the event payload
+     */
+    public ServerSentEvent(String data) {
+        this(null, null, data);
+    }
+
+    /**
+     * Creates a new ServerSentEvent.
+     *
+     * @param id    the event id, or null
+     * @param event the event type, or null for the default "message" type
+     * @param data  the event payload
+     */
+    public ServerSentEvent(String id, String event, String data) {
+        this.id = id;
+        this.event = event;
+        this.data = data != null ? data : "";
+    }
+
+    /**
+     * Encodes the event in the text/event-stream format into a direct buffer
+     * so it can be written to many sockets without further copies.
+     *
+     * @return the encoded event, positioned at zero
+     */
+    public ByteBuffer encode() {
+        StringBuilder builder = new StringBuilder(data.length() + 32);
+        if (id != null) {
+            builder.append("id: ").append(id).append('\n');
+        }
+        if (event != null) {
+            builder.append("event: ").append(event).append('\n');
+        }
+
+        // Multi-line payloads need one data field per line
+        int lineStart = 0;
+        while (true) {
+            int lineEnd = data.indexOf('\n', lineStart);
+            builder.append("data: ").append(data, lineStart, lineEnd < 0 ? data.length() : lineEnd).append('\n');
+            if (lineEnd < 0) {
+                break;
+            }
+            lineStart = lineEnd + 1;
+        }
+        builder.append('\n');
+
+        return toDirectBuffer(builder.toString());
+    }
+
+    /**
+     * Encodes a comment line, used as a heartbeat that clients ignore.
+     *
+     * @param comment the comment text
+     * @return the encoded comment, positioned at zero
+     */
+    static ByteBuffer encodeComment(String comment) {
+        return toDirectBuffer(": " + comment + "\n\n");
+    }
+
+    /**
+     * Copies a string as UTF-8 into a new direct buffer.
+     *
+     * @param text the text to copy
+     * @return the filled buffer, positioned at zero
+     */
+    private static ByteBuffer toDirectBuffer(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    /**
+     * Gets the event id.
+     *
+     * @return the event id or null
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the event type.
+     *
+     * @return the event type or null
+     */
+    public String getEvent() {
+        return event;
+    }
+
+    /**
+     * Gets the event payload.
+     *
+     * @return the event payload
+     */
+    public String getData() {
+        return data;
+    }
+}
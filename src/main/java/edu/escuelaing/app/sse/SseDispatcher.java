@@ -0,0 +1,320 @@
+package edu.escuelaing.app.sse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Owns every open Server-Sent Events connection and writes to them from a
+ * single selector thread using non-blocking I/O. Publishing and subscribing
+ * only enqueue work for that thread, so request workers never block on slow
+ * clients. Subscribers whose queue overflows are evicted, and idle
+ * subscribers receive periodic heartbeat comments.
+ */
+public class SseDispatcher {
+    private static final int HEARTBEAT_TICKS = 8;
+
+    private final int maxQueuedEvents;
+    private final long heartbeatNanos;
+    private final ByteBuffer heartbeatFrame;
+    private final DeadlineWheel<Subscriber> heartbeats;
+    private final Queue<Subscriber> pendingSubscribers = new ConcurrentLinkedQueue<>();
+    private final Queue<Publication> pendingPublications = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(256);
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * Creates a new SseDispatcher.
+     *
+     * @param maxQueuedEvents   the number of undelivered events a subscriber may
+     *                          accumulate before it is evicted
+     * @param heartbeatInterval the idle time after which a heartbeat is sent
+     * @param unit              the unit of the heartbeat interval
+     */
+    public SseDispatcher(int maxQueuedEvents, long heartbeatInterval, TimeUnit unit) {
+        if (maxQueuedEvents <= 0) {
+            throw new IllegalArgumentException("Queue bound must be positive");
+        }
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.heartbeatNanos = unit.toNanos(heartbeatInterval);
+        this.heartbeatFrame = ServerSentEvent.encodeComment("heartbeat");
+        // Deadlines are rounded up to an eighth of the interval; the wheel reaches two intervals ahead
+        this.heartbeats = new DeadlineWheel<>(heartbeatNanos / HEARTBEAT_TICKS, HEARTBEAT_TICKS * 2,
+                System.nanoTime());
+    }
+
+    /**
+     * Opens the selector and starts the dispatcher thread.
+     *
+     * @throws IOException if the selector cannot be opened
+     */
+    public synchronized void start() throws IOException {
+        if (running) {
+            return;
+        }
+        selector = Selector.open();
+        running = true;
+        thread = new Thread(this::run, "sse-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Hands a connection whose response headers have already been written over
+     * to the dispatcher. The caller must not use or close the channel
+     * afterwards.
+     *
+     * @param eventChannel  the channel to subscribe to
+     * @param socketChannel the client connection
+     * @throws IOException if the dispatcher is not running
+     */
+    public void subscribe(EventChannel eventChannel, SocketChannel socketChannel) throws IOException {
+        if (!running) {
+            throw new IOException("Event stream dispatcher is not running");
+        }
+        eventChannel.bind(this);
+        pendingSubscribers.add(new Subscriber(socketChannel, eventChannel, this, maxQueuedEvents));
+        selector.wakeup();
+    }
+
+    /**
+     * Queues an encoded event for delivery to a channel.
+     *
+     * @param eventChannel the target channel
+     * @param frame        the encoded event
+     */
+    void publish(EventChannel eventChannel, ByteBuffer frame) {
+        if (!running) {
+            return;
+        }
+        pendingPublications.add(new Publication(eventChannel, frame));
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the dispatcher thread and closes all subscriber connections.
+     */
+    public synchronized void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Main loop of the dispatcher thread.
+     */
+    private void run() {
+        try {
+            while (running) {
+                long timeoutMillis = Math.max(1,
+                        TimeUnit.NANOSECONDS.toMillis(heartbeats.nextExpiry() - System.nanoTime()));
+                selector.select(timeoutMillis);
+
+                registerPendingSubscribers();
+                deliverPendingPublications();
+                processSelectedKeys();
+
+                long now = System.nanoTime();
+                if (now - heartbeats.nextExpiry() >= 0) {
+                    heartbeats.expire(now, subscriber -> checkHeartbeat(subscriber, now));
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.err.println("Event stream dispatcher stopped: " + e.getMessage());
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Switches newly handed-over connections to non-blocking mode and registers
+     * them with the selector.
+     */
+    private void registerPendingSubscribers() {
+        Subscriber subscriber;
+        while ((subscriber = pendingSubscribers.poll()) != null) {
+            try {
+                SocketChannel socketChannel = subscriber.getSocketChannel();
+                socketChannel.configureBlocking(false);
+                subscriber.setKey(socketChannel.register(selector, SelectionKey.OP_READ, subscriber));
+            } catch (IOException e) {
+                subscriber.close();
+                continue;
+            }
+
+            subscriber.getEventChannel().add(subscriber);
+            heartbeats.schedule(subscriber, subscriber.getHeartbeatDeadline(System.nanoTime(), heartbeatNanos));
+        }
+    }
+
+    /**
+     * Fans out every event published since the last iteration.
+     */
+    private void deliverPendingPublications() {
+        Publication publication;
+        while ((publication = pendingPublications.poll()) != null) {
+            publication.eventChannel.deliver(publication.frame);
+            published.increment();
+        }
+    }
+
+    /**
+     * Handles readiness events: resumes pending writes and detects clients
+     * that closed their connection.
+     */
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Subscriber subscriber = (Subscriber) key.attachment();
+            if (!key.isValid()) {
+                continue;
+            }
+
+            if (key.isReadable() && !drainInput(subscriber)) {
+                evict(subscriber, false);
+                continue;
+            }
+            if (key.isValid() && key.isWritable()) {
+                subscriber.flush();
+            }
+        }
+    }
+
+    /**
+     * Discards anything the client sends and reports whether it is still
+     * connected.
+     *
+     * @param subscriber the subscriber to read from
+     * @return false if the client closed the connection
+     */
+    private boolean drainInput(Subscriber subscriber) {
+        try {
+            int read;
+            do {
+                readBuffer.clear();
+                read = subscriber.getSocketChannel().read(readBuffer);
+            } while (read > 0);
+            return read == 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends the shared heartbeat frame to a subscriber whose heartbeat
+     * deadline has passed if it has been idle for a full interval, and
+     * schedules its next check. Subscribers that wrote in the meantime are
+     * simply rescheduled, so each one is visited about once per interval
+     * however many are connected.
+     *
+     * @param subscriber the subscriber that fell due
+     * @param now        the current time in nanoseconds
+     */
+    private void checkHeartbeat(Subscriber subscriber, long now) {
+        if (subscriber.slot < 0) {
+            // Evicted since it was scheduled
+            return;
+        }
+        if (subscriber.isIdle(now, heartbeatNanos)) {
+            subscriber.offer(heartbeatFrame);
+            if (subscriber.slot < 0) {
+                return;
+            }
+        }
+        heartbeats.schedule(subscriber, subscriber.getHeartbeatDeadline(now, heartbeatNanos));
+    }
+
+    /**
+     * Removes a subscriber and closes its connection.
+     *
+     * @param subscriber the subscriber to remove
+     * @param slow       whether it was evicted for falling behind
+     */
+    void evict(Subscriber subscriber, boolean slow) {
+        subscriber.getEventChannel().remove(subscriber);
+        subscriber.close();
+        if (slow) {
+            evicted.increment();
+        }
+    }
+
+    /**
+     * Closes every connection owned by the dispatcher. Every registered
+     * subscriber holds a selection key, so the dispatcher keeps no list of
+     * channels of its own.
+     */
+    private void closeAll() {
+        for (SelectionKey key : new ArrayList<>(selector.keys())) {
+            evict((Subscriber) key.attachment(), false);
+        }
+        Subscriber subscriber;
+        while ((subscriber = pendingSubscribers.poll()) != null) {
+            subscriber.close();
+        }
+        pendingPublications.clear();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Error closing event stream selector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of subscribers evicted for falling behind.
+     *
+     * @return the eviction count
+     */
+    public long getEvictedCount() {
+        return evicted.sum();
+    }
+
+    /**
+     * Gets the number of events delivered to channels.
+     *
+     * @return the published event count
+     */
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * An encoded event waiting to be fanned out.
+     */
+    private static class Publication {
+        private final EventChannel eventChannel;
+        private final ByteBuffer frame;
+
+        /**
+         * Creates a new Publication.
+         *
+         * @param eventChannel the target channel
+         * @param frame        the encoded event
+         */
+        Publication(EventChannel eventChannel, ByteBuffer frame) {
+            this.eventChannel = eventChannel;
+            this.frame = frame;
+        }
+    }
+}
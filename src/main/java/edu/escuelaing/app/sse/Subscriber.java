@@ -0,0 +1,155 @@
+package edu.escuelaing.app.sse;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * A single SSE connection with its bounded queue of pending frames. Frames are
+ * shared between subscribers, so only the dispatcher thread may touch them; the
+ * write position into the head frame is tracked here rather than in the
+ * buffer.
+ */
+class Subscriber {
+    private final SocketChannel socketChannel;
+    private final EventChannel eventChannel;
+    private final SseDispatcher dispatcher;
+    private final ArrayDeque<ByteBuffer> queue;
+    private final int maxQueuedEvents;
+    private SelectionKey key;
+    private int headOffset;
+    private long lastWriteNanos;
+    int slot = -1;
+
+    /**
+     * Creates a new Subscriber.
+     *
+     * @param socketChannel   the non-blocking client channel
+     * @param eventChannel    the channel the subscriber listens to
+     * @param dispatcher      the owning dispatcher
+     * @param maxQueuedEvents the number of pending frames tolerated before
+     *                        eviction
+     */
+    Subscriber(SocketChannel socketChannel, EventChannel eventChannel, SseDispatcher dispatcher,
+            int maxQueuedEvents) {
+        this.socketChannel = socketChannel;
+        this.eventChannel = eventChannel;
+        this.dispatcher = dispatcher;
+        this.maxQueuedEvents = maxQueuedEvents;
+        this.queue = new ArrayDeque<>(Math.min(maxQueuedEvents, 16));
+        this.lastWriteNanos = System.nanoTime();
+    }
+
+    /**
+     * Sets the selection key registered for this subscriber.
+     *
+     * @param key the selection key
+     */
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * Queues a frame for delivery, writing it immediately when nothing is
+     * pending. Evicts the subscriber if its queue is full.
+     *
+     * @param frame the shared encoded frame
+     */
+    void offer(ByteBuffer frame) {
+        if (!queue.isEmpty()) {
+            if (queue.size() >= maxQueuedEvents) {
+                dispatcher.evict(this, true);
+                return;
+            }
+            queue.add(frame);
+            return;
+        }
+
+        queue.add(frame);
+        flush();
+    }
+
+    /**
+     * Writes as many pending frames as the socket accepts without blocking.
+     */
+    void flush() {
+        try {
+            while (!queue.isEmpty()) {
+                ByteBuffer head = queue.peek();
+                head.position(headOffset);
+                socketChannel.write(head);
+                if (head.hasRemaining()) {
+                    headOffset = head.position();
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                    return;
+                }
+                queue.poll();
+                headOffset = 0;
+                lastWriteNanos = System.nanoTime();
+            }
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+        } catch (IOException e) {
+            dispatcher.evict(this, false);
+        }
+    }
+
+    /**
+     * Checks whether the subscriber has nothing pending and has been quiet for
+     * at least the given time.
+     *
+     * @param now       the current time in nanoseconds
+     * @param idleNanos the minimum idle time in nanoseconds
+     * @return true if a heartbeat should be sent
+     */
+    boolean isIdle(long now, long idleNanos) {
+        return queue.isEmpty() && now - lastWriteNanos >= idleNanos;
+    }
+
+    /**
+     * Gets the time at which the subscriber next needs a heartbeat: one
+     * interval after its last write, or one interval from now while writes
+     * are still pending.
+     *
+     * @param now       the current time in nanoseconds
+     * @param idleNanos the heartbeat interval in nanoseconds
+     * @return the heartbeat deadline in nanoseconds
+     */
+    long getHeartbeatDeadline(long now, long idleNanos) {
+        return (queue.isEmpty() ? lastWriteNanos : now) + idleNanos;
+    }
+
+    /**
+     * Releases queued frames and closes the connection.
+     */
+    void close() {
+        queue.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            socketChannel.close();
+        } catch (IOException e) {
+            // Connection is already gone
+        }
+    }
+
+    /**
+     * Gets the client channel.
+     *
+     * @return the socket channel
+     */
+    SocketChannel getSocketChannel() {
+        return socketChannel;
+    }
+
+    /**
+     * Gets the event channel this subscriber listens to.
+     *
+     * @return the event channel
+     */
+    EventChannel getEventChannel() {
+        return eventChannel;
+    }
+}
@@ -0,0 +1,203 @@
+package edu.escuelaing.app.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import edu.escuelaing.app.http.HttpRequest;
+import edu.escuelaing.app.http.HttpResponse;
+
+/**
+ * Tests for the JSON reader of {@link BatchHandler} and its handling of
+ * malformed batch bodies.
+ */
+public class BatchHandlerTest {
+
+    /**
+     * Well-formed documents produce maps, lists and scalars.
+     */
+    @Test
+    public void readsValidDocument() {
+        Object parsed = read(" [ {\"method\": \"GET\", \"path\": \"/hello\", \"params\": {\"n\": 2.5, \"ok\": true}},"
+                + " null, false, \"a\\\"b\\u0041\\n\", -1e3, [] ] ");
+
+        List<?> items = (List<?>) parsed;
+        assertEquals(6, items.size());
+        Map<?, ?> first = (Map<?, ?>) items.get(0);
+        assertEquals(Arrays.asList("method", "path", "params"), Arrays.asList(first.keySet().toArray()));
+        assertEquals("/hello", first.get("path"));
+        Map<?, ?> params = (Map<?, ?>) first.get("params");
+        assertEquals(2.5, (Double) params.get("n"), 0.0);
+        assertEquals(Boolean.TRUE, params.get("ok"));
+        assertNull(items.get(1));
+        assertEquals(Boolean.FALSE, items.get(2));
+        assertEquals("a\"bA\n", items.get(3));
+        assertEquals(-1000.0, (Double) items.get(4), 0.0);
+        assertEquals(Collections.emptyList(), items.get(5));
+    }
+
+    /**
+     * Structurally broken documents are rejected.
+     */
+    @Test
+    public void rejectsMalformedDocuments() {
+        String[] malformed = {
+                "",
+                "   ",
+                "[",
+                "[1,",
+                "[1 2]",
+                "{\"a\" 1}",
+                "{1: 2}",
+                "{\"a\": 1,}",
+                "\"unterminated",
+                "\"bad escape \\u12G4\"",
+                "\"cut escape \\",
+                "tru",
+                "nul",
+                "-",
+                "1.2.3",
+                "@",
+                "[] []",
+                "{}}"
+        };
+        for (String text : malformed) {
+            try {
+                read(text);
+                fail("Expected a parse error for: " + text);
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid batch JSON at offset "));
+            }
+        }
+    }
+
+    /**
+     * Nesting up to the limit is accepted; one level more is rejected.
+     */
+    @Test
+    public void limitsNestingDepth() {
+        int limit = BatchHandler.MAX_NESTING_DEPTH;
+        read(repeat("[", limit) + repeat("]", limit));
+        read(repeat("{\"a\":", limit - 1) + "{}" + repeat("}", limit - 1));
+
+        try {
+            read(repeat("[", limit + 1) + repeat("]", limit + 1));
+            fail("Expected a nesting error");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Nesting deeper than " + limit + " levels"));
+        }
+    }
+
+    /**
+     * Siblings do not add up towards the nesting limit.
+     */
+    @Test
+    public void nestingCountsDepthNotTotal() {
+        StringBuilder text = new StringBuilder("[");
+        for (int i = 0; i < 100; i++) {
+            text.append(i > 0 ? "," : "").append("[{\"a\":[]}]");
+        }
+        assertEquals(100, ((List<?>) read(text.append(']').toString())).size());
+    }
+
+    /**
+     * Deeply nested input is answered with 400 instead of overflowing the
+     * stack.
+     */
+    @Test
+    public void deepNestingIsBadRequest() {
+        HttpResponse response = handle(repeat("[", 200_000));
+        assertEquals(400, response.getStatusCode());
+        assertTrue(response.getBody(), response.getBody().contains("Nesting deeper than"));
+    }
+
+    /**
+     * Malformed bodies and bodies that are not arrays are answered with 400.
+     */
+    @Test
+    public void malformedBodyIsBadRequest() {
+        assertEquals(400, handle("[{\"method\":").getStatusCode());
+        assertEquals(400, handle("{\"method\": \"GET\"}").getStatusCode());
+        assertEquals(400, handle(null).getStatusCode());
+    }
+
+    /**
+     * Sub-requests the executor turns away are served on the calling thread,
+     * still in request order.
+     */
+    @Test
+    public void rejectedSubRequestsRunOnCaller() {
+        Executor saturated = task -> {
+            throw new RejectedExecutionException("saturated");
+        };
+        HttpResponse response = handle("[{\"id\": \"a\", \"method\": \"GET\", \"path\": \"/a\"},"
+                + " {\"id\": \"b\", \"method\": \"GET\", \"path\": \"/_batch\"}]", saturated);
+
+        assertEquals(200, response.getStatusCode());
+        List<?> results = (List<?>) read(response.getBody());
+        assertEquals(2, results.size());
+        assertEquals("a", ((Map<?, ?>) results.get(0)).get("id"));
+        assertEquals("b", ((Map<?, ?>) results.get(1)).get("id"));
+        assertEquals(400.0, (Double) ((Map<?, ?>) results.get(1)).get("status"), 0.0);
+    }
+
+    /**
+     * Parses a JSON document.
+     *
+     * @param text the JSON text
+     * @return the parsed value
+     */
+    private static Object read(String text) {
+        return new BatchHandler.JsonReader(text).readDocument();
+    }
+
+    /**
+     * Runs a batch request with the given body against an empty handler.
+     *
+     * @param body the request body, or null for none
+     * @return the response
+     */
+    private static HttpResponse handle(String body) {
+        return handle(body, Runnable::run);
+    }
+
+    /**
+     * Runs a batch request with the given body against an empty handler.
+     *
+     * @param body     the request body, or null for none
+     * @param executor the executor for the sub-requests
+     * @return the response
+     */
+    private static HttpResponse handle(String body, Executor executor) {
+        HttpRequest request = new HttpRequest();
+        request.setBody(body);
+        HttpResponse response = new HttpResponse();
+        new BatchHandler(executor).handle(new RequestHandler(), request, response);
+        return response;
+    }
+
+    /**
+     * Repeats a string.
+     *
+     * @param text  the string to repeat
+     * @param count the number of copies
+     * @return the repeated string
+     */
+    private static String repeat(String text, int count) {
+        StringBuilder builder = new StringBuilder(text.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+}
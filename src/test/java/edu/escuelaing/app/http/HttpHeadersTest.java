@@ -0,0 +1,210 @@
+package edu.escuelaing.app.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link HttpHeaders}.
+ */
+public class HttpHeadersTest {
+
+    /**
+     * Names are matched case-insensitively, for both well-known and other
+     * headers.
+     */
+    @Test
+    public void getIgnoresCase() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("content-type", "text/plain");
+        headers.add("X-Request-Id", "42");
+
+        assertEquals("text/plain", headers.get("Content-Type"));
+        assertEquals("text/plain", headers.get(HttpHeaders.CONTENT_TYPE));
+        assertEquals("42", headers.get("x-request-id"));
+        assertNull(headers.get("X-Missing"));
+        assertNull(headers.get(HttpHeaders.HOST));
+    }
+
+    /**
+     * Repeated headers keep every value in insertion order.
+     */
+    @Test
+    public void getAllKeepsInsertionOrder() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Set-Cookie", "a=1");
+        headers.add("X-Other", "x");
+        headers.add("set-cookie", "b=2");
+        headers.add("Set-Cookie", "c=3");
+
+        assertEquals(Arrays.asList("a=1", "b=2", "c=3"), headers.getAll("Set-Cookie"));
+        assertEquals("a=1", headers.get(HttpHeaders.SET_COOKIE));
+        assertEquals(Collections.emptyList(), headers.getAll("Cookie"));
+        assertEquals(4, headers.size());
+    }
+
+    /**
+     * Setting a repeated header keeps the position of its first occurrence
+     * and drops the others.
+     */
+    @Test
+    public void setReplacesFirstAndRemovesRest() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-Trace", "1");
+        headers.add("Cache-Control", "no-store");
+        headers.add("X-Trace", "2");
+        headers.add("Server", "test");
+        headers.add("x-trace", "3");
+
+        headers.set("X-Trace", "only");
+
+        assertEquals(3, headers.size());
+        assertEquals("X-Trace", headers.name(0));
+        assertEquals("only", headers.value(0));
+        assertEquals("Cache-Control", headers.name(1));
+        assertEquals("Server", headers.name(2));
+        assertEquals(Collections.singletonList("only"), headers.getAll("X-Trace"));
+    }
+
+    /**
+     * Setting an absent header appends it.
+     */
+    @Test
+    public void setAppendsMissingHeader() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Host", "localhost");
+
+        headers.set(HttpHeaders.CONTENT_LENGTH, "12");
+
+        assertEquals(2, headers.size());
+        assertEquals("Content-Length", headers.name(1));
+        assertEquals(12, headers.getLong(HttpHeaders.CONTENT_LENGTH, -1));
+    }
+
+    /**
+     * Removing a header drops every occurrence and keeps well-known lookups
+     * pointing at the shifted positions.
+     */
+    @Test
+    public void removeDropsEveryOccurrence() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Cookie", "a=1");
+        headers.add("Host", "localhost");
+        headers.add("cookie", "b=2");
+        headers.add("Accept", "*/*");
+
+        assertTrue(headers.remove("COOKIE"));
+        assertFalse(headers.remove("Cookie"));
+
+        assertEquals(2, headers.size());
+        assertNull(headers.get(HttpHeaders.COOKIE));
+        assertEquals("localhost", headers.get(HttpHeaders.HOST));
+        assertEquals("*/*", headers.get(HttpHeaders.ACCEPT));
+        assertEquals("Accept", headers.name(1));
+    }
+
+    /**
+     * Headers parsed from a receive buffer are trimmed and looked up like
+     * added ones.
+     */
+    @Test
+    public void rawHeadersAreTrimmed() {
+        byte[] data = "Content-Length :  512 \r\nX-Name:\tvalue\t\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        HttpHeaders headers = new HttpHeaders();
+        headers.addRaw(data, 0, 15, 16, 22);
+        headers.addRaw(data, 24, 30, 31, 38);
+
+        assertEquals("Content-Length", headers.name(0));
+        assertEquals("512", headers.get("content-length"));
+        assertEquals(512, headers.getLong(HttpHeaders.CONTENT_LENGTH, -1));
+        assertEquals("value", headers.get("x-name"));
+    }
+
+    /**
+     * Detached headers no longer depend on the receive buffer.
+     */
+    @Test
+    public void detachedHeadersOutliveTheBuffer() {
+        byte[] data = "Content-Length: 512\r\nX-Name: value\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        HttpHeaders headers = new HttpHeaders();
+        headers.addRaw(data, 0, 14, 15, 19);
+        headers.addRaw(data, 21, 27, 28, 34);
+
+        headers.detach();
+        Arrays.fill(data, (byte) 'x');
+
+        assertEquals("X-Name", headers.name(1));
+        assertEquals("value", headers.get("x-name"));
+        assertEquals(512, headers.getLong(HttpHeaders.CONTENT_LENGTH, -1));
+    }
+
+    /**
+     * Writing a response into the send space of the receive buffer leaves the
+     * request headers intact, including when the request leaves too little
+     * room and the headers are decoded instead.
+     *
+     * @throws IOException if parsing or writing fails
+     */
+    @Test
+    public void responseInSendSpaceKeepsRequestHeaders() throws IOException {
+        for (int padding : new int[] {0, 7500}) {
+            String raw = "GET /hello HTTP/1.1\r\nHost: localhost\r\nX-Trace: abc\r\nX-Pad: "
+                    + repeat('p', padding) + "\r\n\r\n";
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            HttpRequest request = new HttpRequest();
+            request.parse(new ByteArrayInputStream(raw.getBytes(StandardCharsets.ISO_8859_1)), buffer);
+
+            HttpResponse response = new HttpResponse();
+            response.setBody(repeat('b', 8192));
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            response.write(output, request.getSendSpace(buffer));
+
+            assertTrue(output.toString("ISO-8859-1").startsWith("HTTP/1.1 200 OK\r\n"));
+            assertEquals("localhost", request.getHeader("host"));
+            assertEquals("abc", request.getHeader("x-trace"));
+            assertEquals(padding, request.getHeader("x-pad").length());
+        }
+    }
+
+    /**
+     * Clearing makes the instance reusable.
+     */
+    @Test
+    public void clearRemovesEverything() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Host", "localhost");
+        headers.add("X-One", "1");
+
+        headers.clear();
+
+        assertEquals(0, headers.size());
+        assertNull(headers.get(HttpHeaders.HOST));
+        assertEquals(-1, headers.getLong(HttpHeaders.CONTENT_LENGTH, -1));
+        headers.add("Host", "example.com");
+        assertEquals("example.com", headers.get(HttpHeaders.HOST));
+    }
+
+    /**
+     * Repeats a character.
+     *
+     * @param c     the character to repeat
+     * @param count the number of copies
+     * @return the repeated string
+     */
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
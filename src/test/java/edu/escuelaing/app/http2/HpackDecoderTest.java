@@ -0,0 +1,156 @@
+package edu.escuelaing.app.http2;
+
+import static edu.escuelaing.app.http2.HuffmanTest.hex;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link HpackDecoder} using the header block examples of
+ * RFC 7541, Appendix C. Each sequence is decoded by one decoder so that
+ * later blocks depend on the dynamic table built by earlier ones.
+ */
+public class HpackDecoderTest {
+
+    /**
+     * C.4: requests with Huffman coding, sharing the dynamic table.
+     *
+     * @throws Http2Exception if a block is rejected
+     */
+    @Test
+    public void decodesRequestsWithHuffmanCoding() throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(4096);
+
+        // C.4.1
+        assertFields(decoder.decode(hex("828684418cf1e3c2e5f23a6ba0ab90f4ff"), 17),
+                ":method", "GET",
+                ":scheme", "http",
+                ":path", "/",
+                ":authority", "www.example.com");
+
+        // C.4.2
+        assertFields(decoder.decode(hex("828684be5886a8eb10649cbf"), 12),
+                ":method", "GET",
+                ":scheme", "http",
+                ":path", "/",
+                ":authority", "www.example.com",
+                "cache-control", "no-cache");
+
+        // C.4.3
+        assertFields(decoder.decode(hex("828785bf408825a849e95ba97d7f8925a849e95bb8e8b4bf"), 24),
+                ":method", "GET",
+                ":scheme", "https",
+                ":path", "/index.html",
+                ":authority", "www.example.com",
+                "custom-key", "custom-value");
+    }
+
+    /**
+     * C.6: responses with Huffman coding and a 256-byte table, so that the
+     * second and third responses evict older entries.
+     *
+     * @throws Http2Exception if a block is rejected
+     */
+    @Test
+    public void decodesResponsesWithHuffmanCoding() throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(256);
+
+        // C.6.1
+        byte[] first = hex("488264025885aec3771a4b6196d07abe941054d444a8200595040b8166e082a62d1bff"
+                + "6e919d29ad171863c78f0b97c8e9ae82ae43d3");
+        assertFields(decoder.decode(first, first.length),
+                ":status", "302",
+                "cache-control", "private",
+                "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+                "location", "https://www.example.com");
+
+        // C.6.2
+        assertFields(decoder.decode(hex("4883640effc1c0bf"), 8),
+                ":status", "307",
+                "cache-control", "private",
+                "date", "Mon, 21 Oct 2013 20:13:21 GMT",
+                "location", "https://www.example.com");
+
+        // C.6.3
+        byte[] third = hex("88c16196d07abe941054d444a8200595040b8166e084a62d1bffc05a839bd9ab77ad94e7"
+                + "821dd7f2e6c7b335dfdfcd5b3960d5af27087f3672c1ab270fb5291f9587316065c003ed"
+                + "4ee5b1063d5007");
+        assertFields(decoder.decode(third, third.length),
+                ":status", "200",
+                "cache-control", "private",
+                "date", "Mon, 21 Oct 2013 20:13:22 GMT",
+                "location", "https://www.example.com",
+                "content-encoding", "gzip",
+                "set-cookie", "foo=ASDJKHQKBZXOQWEOPIUAXQWEOIU; max-age=3600; version=1");
+    }
+
+    /**
+     * Only the given number of bytes of the block are decoded.
+     *
+     * @throws Http2Exception if the block is rejected
+     */
+    @Test
+    public void decodesOnlyTheGivenLength() throws Http2Exception {
+        HpackDecoder decoder = new HpackDecoder(4096);
+        assertFields(decoder.decode(hex("8286ff"), 2),
+                ":method", "GET",
+                ":scheme", "http");
+    }
+
+    /**
+     * An index past the end of the dynamic table is a compression error.
+     */
+    @Test
+    public void rejectsUnknownIndex() {
+        assertRejected(new HpackDecoder(4096), hex("be"));
+    }
+
+    /**
+     * A table size update after a field is a compression error.
+     */
+    @Test
+    public void rejectsLateTableSizeUpdate() {
+        assertRejected(new HpackDecoder(4096), hex("8220"));
+    }
+
+    /**
+     * A table size update above the advertised limit is a compression error.
+     */
+    @Test
+    public void rejectsTableSizeOverLimit() {
+        // Size update to 4097
+        assertRejected(new HpackDecoder(4096), hex("3fe21f"));
+    }
+
+    /**
+     * Compares decoded fields with expected name and value pairs.
+     *
+     * @param fields   the decoded fields
+     * @param expected the expected names and values, alternating
+     */
+    private static void assertFields(List<String[]> fields, String... expected) {
+        assertEquals(expected.length / 2, fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            assertEquals(expected[i * 2], fields.get(i)[0]);
+            assertEquals(expected[i * 2 + 1], fields.get(i)[1]);
+        }
+    }
+
+    /**
+     * Checks that decoding a block fails with a compression error.
+     *
+     * @param decoder the decoder to use
+     * @param block   the invalid header block
+     */
+    private static void assertRejected(HpackDecoder decoder, byte[] block) {
+        try {
+            decoder.decode(block, block.length);
+            fail("Expected a compression error");
+        } catch (Http2Exception e) {
+            assertEquals(Http2Exception.COMPRESSION_ERROR, e.getErrorCode());
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package edu.escuelaing.app.http2;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link Huffman} using the string literals of RFC 7541,
+ * Appendix C.4 and C.6.
+ */
+public class HuffmanTest {
+
+    /**
+     * Encoding produces the RFC bytes, including the EOS padding.
+     */
+    @Test
+    public void encodesRfcExamples() {
+        assertEncoding("www.example.com", "f1e3c2e5f23a6ba0ab90f4ff");
+        assertEncoding("no-cache", "a8eb10649cbf");
+        assertEncoding("custom-key", "25a849e95ba97d7f");
+        assertEncoding("custom-value", "25a849e95bb8e8b4bf");
+        assertEncoding("302", "6402");
+        assertEncoding("private", "aec3771a4b");
+        assertEncoding("Mon, 21 Oct 2013 20:13:21 GMT", "d07abe941054d444a8200595040b8166e082a62d1bff");
+        assertEncoding("https://www.example.com", "9d29ad171863c78f0b97c8e9ae82ae43d3");
+    }
+
+    /**
+     * Decoding the RFC bytes gives back the original strings.
+     *
+     * @throws Http2Exception if a valid encoding is rejected
+     */
+    @Test
+    public void decodesRfcExamples() throws Http2Exception {
+        assertDecoding("f1e3c2e5f23a6ba0ab90f4ff", "www.example.com");
+        assertDecoding("a8eb10649cbf", "no-cache");
+        assertDecoding("25a849e95bb8e8b4bf", "custom-value");
+        assertDecoding("d07abe941054d444a8200595040b8166e082a62d1bff", "Mon, 21 Oct 2013 20:13:21 GMT");
+        assertDecoding("9d29ad171863c78f0b97c8e9ae82ae43d3", "https://www.example.com");
+    }
+
+    /**
+     * Every byte value survives an encode and decode round trip.
+     *
+     * @throws Http2Exception if the encoded form is rejected
+     */
+    @Test
+    public void roundTripsEveryByte() throws Http2Exception {
+        byte[] data = new byte[256];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(data, out);
+        byte[] encoded = out.toByteArray();
+
+        assertEquals(Huffman.encodedLength(data), encoded.length);
+        assertArrayEquals(data, Huffman.decode(encoded, 0, encoded.length));
+    }
+
+    /**
+     * Decoding honours the offset and length of the encoded range.
+     *
+     * @throws Http2Exception if a valid encoding is rejected
+     */
+    @Test
+    public void decodesSubrange() throws Http2Exception {
+        byte[] data = hex("00a8eb10649cbf00");
+        assertEquals("no-cache", new String(Huffman.decode(data, 1, 6), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Padding that is not a prefix of EOS is a compression error.
+     */
+    @Test
+    public void rejectsPaddingOfZeros() {
+        // '0' is 00000, followed by three zero bits instead of ones
+        assertRejected(hex("00"));
+    }
+
+    /**
+     * Padding longer than seven bits is a compression error.
+     */
+    @Test
+    public void rejectsOverlongPadding() {
+        assertRejected(hex("a8eb10649cbfff"));
+    }
+
+    /**
+     * Encodes a string and compares it with the expected bytes.
+     *
+     * @param text     the string to encode
+     * @param expected the expected encoding in hexadecimal
+     */
+    private static void assertEncoding(String text, String expected) {
+        byte[] data = text.getBytes(StandardCharsets.ISO_8859_1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Huffman.encode(data, out);
+        assertArrayEquals(hex(expected), out.toByteArray());
+        assertEquals(expected.length() / 2, Huffman.encodedLength(data));
+    }
+
+    /**
+     * Decodes bytes and compares them with the expected string.
+     *
+     * @param encoded  the encoding in hexadecimal
+     * @param expected the expected string
+     * @throws Http2Exception if the encoding is rejected
+     */
+    private static void assertDecoding(String encoded, String expected) throws Http2Exception {
+        byte[] data = hex(encoded);
+        assertEquals(expected, new String(Huffman.decode(data, 0, data.length), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Checks that decoding fails with a compression error.
+     *
+     * @param data the invalid encoding
+     */
+    private static void assertRejected(byte[] data) {
+        try {
+            Huffman.decode(data, 0, data.length);
+            fail("Expected a compression error");
+        } catch (Http2Exception e) {
+            assertEquals(Http2Exception.COMPRESSION_ERROR, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Parses a hexadecimal string.
+     *
+     * @param hex the hexadecimal digits, without separators
+     * @return the bytes
+     */
+    static byte[] hex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
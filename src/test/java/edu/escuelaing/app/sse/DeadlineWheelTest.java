@@ -0,0 +1,116 @@
+package edu.escuelaing.app.sse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link DeadlineWheel}, driven by explicit times.
+ */
+public class DeadlineWheelTest {
+    private static final long START = 1_000_000L;
+    private static final long TICK = 100;
+
+    /**
+     * Entries fire on the first tick at or after their deadline.
+     */
+    @Test
+    public void firesOnFirstTickAfterDeadline() {
+        DeadlineWheel<String> wheel = new DeadlineWheel<>(TICK, 16, START);
+        wheel.schedule("exact", START + 200);
+        wheel.schedule("rounded", START + 201);
+        wheel.schedule("past", START - 50);
+
+        assertEquals(START + 100, wheel.nextExpiry());
+        assertEquals(Collections.singletonList("past"), expire(wheel, START + 100));
+        assertEquals(Collections.singletonList("exact"), expire(wheel, START + 299));
+        assertEquals(Collections.singletonList("rounded"), expire(wheel, START + 300));
+        assertEquals(START + 400, wheel.nextExpiry());
+    }
+
+    /**
+     * Nothing fires before the next tick elapses.
+     */
+    @Test
+    public void firesNothingEarly() {
+        DeadlineWheel<String> wheel = new DeadlineWheel<>(TICK, 16, START);
+        wheel.schedule("a", START + 150);
+
+        assertEquals(Collections.emptyList(), expire(wheel, START + 99));
+        assertEquals(Collections.emptyList(), expire(wheel, START + 199));
+        assertEquals(Collections.singletonList("a"), expire(wheel, START + 200));
+    }
+
+    /**
+     * A late pass fires every elapsed tick in order.
+     */
+    @Test
+    public void catchesUpAfterStall() {
+        DeadlineWheel<String> wheel = new DeadlineWheel<>(TICK, 4, START);
+        wheel.schedule("c", START + 300);
+        wheel.schedule("a", START + 100);
+        wheel.schedule("b", START + 200);
+
+        assertEquals(Arrays.asList("a", "b", "c"), expire(wheel, START + 5_000));
+        assertEquals(START + 5_100, wheel.nextExpiry());
+    }
+
+    /**
+     * Deadlines beyond the reach of the wheel fire on its farthest tick.
+     */
+    @Test
+    public void clampsFarDeadlines() {
+        DeadlineWheel<String> wheel = new DeadlineWheel<>(TICK, 4, START);
+        wheel.schedule("far", START + 10_000);
+
+        assertEquals(Collections.emptyList(), expire(wheel, START + 300));
+        assertEquals(Collections.singletonList("far"), expire(wheel, START + 400));
+    }
+
+    /**
+     * Entries scheduled again by the action land on later ticks, and each
+     * pass only visits the entries that fell due.
+     */
+    @Test
+    public void rescheduledEntriesFireLater() {
+        DeadlineWheel<Integer> wheel = new DeadlineWheel<>(TICK, 16, START);
+        for (int i = 0; i < 1000; i++) {
+            wheel.schedule(i, START + 100 + (i % 8) * TICK);
+        }
+
+        int[] visits = new int[1];
+        for (long now = START + 100; now <= START + 800; now += TICK) {
+            long current = now;
+            wheel.expire(now, entry -> {
+                visits[0]++;
+                wheel.schedule(entry, current + 8 * TICK);
+            });
+            assertEquals(125 * (now - START) / TICK, visits[0]);
+        }
+
+        List<Integer> second = new ArrayList<>();
+        wheel.expire(START + 900, second::add);
+        assertEquals(125, second.size());
+        assertTrue(second.contains(0));
+    }
+
+    /**
+     * Runs one pass and collects the fired entries.
+     *
+     * @param <T>   the type of the entries
+     * @param wheel the wheel
+     * @param now   the current time
+     * @return the fired entries in firing order
+     */
+    private static <T> List<T> expire(DeadlineWheel<T> wheel, long now) {
+        List<T> fired = new ArrayList<>();
+        wheel.expire(now, fired::add);
+        return fired;
+    }
+}
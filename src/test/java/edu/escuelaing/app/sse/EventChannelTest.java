@@ -0,0 +1,195 @@
+package edu.escuelaing.app.sse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the subscriber bookkeeping of {@link EventChannel}, using real
+ * loopback connections that the test drives in place of the dispatcher
+ * thread.
+ */
+public class EventChannelTest {
+    private ServerSocketChannel server;
+    private Selector selector;
+    private SseDispatcher dispatcher;
+    private final List<SocketChannel> clients = new ArrayList<>();
+    private final List<Subscriber> subscribers = new ArrayList<>();
+
+    /**
+     * Opens the listening socket and selector.
+     *
+     * @throws IOException if they cannot be opened
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        selector = Selector.open();
+        dispatcher = new SseDispatcher(1, 15, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Closes every connection.
+     *
+     * @throws IOException if closing fails
+     */
+    @After
+    public void tearDown() throws IOException {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        for (SocketChannel client : clients) {
+            client.close();
+        }
+        selector.close();
+        server.close();
+    }
+
+    /**
+     * Removing a subscriber moves the last one into its slot and keeps the
+     * count in step; removing it again changes nothing.
+     *
+     * @throws IOException if a connection cannot be opened
+     */
+    @Test
+    public void removeSwapsLastIntoSlot() throws IOException {
+        EventChannel channel = new EventChannel("test");
+        Subscriber first = connect(channel);
+        Subscriber second = connect(channel);
+        Subscriber third = connect(channel);
+
+        channel.remove(first);
+
+        assertEquals(2, channel.getSubscriberCount());
+        assertEquals(-1, first.slot);
+        assertSame(third, channel.subscribers.get(0));
+        assertEquals(0, third.slot);
+        assertSame(second, channel.subscribers.get(1));
+        assertEquals(1, second.slot);
+
+        channel.remove(first);
+        assertEquals(2, channel.getSubscriberCount());
+
+        channel.remove(second);
+        channel.remove(third);
+        assertEquals(0, channel.getSubscriberCount());
+        assertTrue(channel.subscribers.isEmpty());
+    }
+
+    /**
+     * Every subscriber receives a delivered frame exactly once.
+     *
+     * @throws IOException if a connection fails
+     */
+    @Test
+    public void deliverReachesEverySubscriber() throws IOException {
+        EventChannel channel = new EventChannel("test");
+        for (int i = 0; i < 5; i++) {
+            connect(channel);
+        }
+
+        channel.deliver(new ServerSentEvent("one").encode());
+        channel.deliver(new ServerSentEvent("two").encode());
+
+        for (SocketChannel client : clients) {
+            assertEquals("data: one\n\ndata: two\n\n", readExactly(client, 22));
+        }
+    }
+
+    /**
+     * Subscribers evicted for a full queue in the middle of a fan-out do not
+     * make the others miss the frame or receive it twice.
+     *
+     * @throws IOException if a connection fails
+     */
+    @Test
+    public void evictionDuringDeliverSkipsNobody() throws IOException {
+        EventChannel channel = new EventChannel("test");
+        List<Subscriber> slow = new ArrayList<>();
+        List<SocketChannel> healthy = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            Subscriber subscriber = connect(channel);
+            if (i % 2 == 0) {
+                slow.add(subscriber);
+            } else {
+                healthy.add(clients.get(i));
+            }
+        }
+        // A frame larger than the socket buffers stays queued, filling the queue of one
+        ByteBuffer backlog = ByteBuffer.allocate(64 * 1024 * 1024);
+        for (Subscriber subscriber : slow) {
+            subscriber.offer(backlog.duplicate());
+        }
+
+        channel.deliver(new ServerSentEvent("after").encode());
+
+        assertEquals(3, channel.getSubscriberCount());
+        assertEquals(3, dispatcher.getEvictedCount());
+        for (Subscriber subscriber : slow) {
+            assertEquals(-1, subscriber.slot);
+            assertFalse(subscriber.getSocketChannel().isOpen());
+        }
+        for (int i = 0; i < channel.subscribers.size(); i++) {
+            assertEquals(i, channel.subscribers.get(i).slot);
+        }
+        for (SocketChannel client : healthy) {
+            assertEquals("data: after\n\n", readExactly(client, 13));
+        }
+    }
+
+    /**
+     * Opens a loopback connection and subscribes its server side.
+     *
+     * @param channel the channel to subscribe to
+     * @return the subscriber
+     * @throws IOException if the connection cannot be opened
+     */
+    private Subscriber connect(EventChannel channel) throws IOException {
+        SocketChannel client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        accepted.configureBlocking(false);
+        Subscriber subscriber = new Subscriber(accepted, channel, dispatcher, 1);
+        subscriber.setKey(accepted.register(selector, SelectionKey.OP_READ, subscriber));
+        channel.add(subscriber);
+        clients.add(client);
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * Reads an exact number of bytes from a client connection.
+     *
+     * @param client the client side of a connection
+     * @param length the number of bytes expected
+     * @return the bytes read as text
+     * @throws IOException if the connection ends early
+     */
+    private static String readExactly(SocketChannel client, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (client.read(buffer) < 0) {
+                throw new IOException("Connection closed after " + buffer.position() + " bytes");
+            }
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+}
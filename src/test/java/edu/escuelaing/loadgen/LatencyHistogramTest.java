@@ -0,0 +1,154 @@
+package edu.escuelaing.loadgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for the bucket and percentile arithmetic of {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * An empty histogram reports zeros.
+     */
+    @Test
+    public void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    /**
+     * Values below 256 each have their own bucket and are reported exactly.
+     */
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1, histogram.getValueAtPercentile(1));
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(90, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+    }
+
+    /**
+     * Larger values fall into buckets whose width doubles with every power
+     * of two, and percentiles report the highest value of the bucket.
+     */
+    @Test
+    public void largeValuesUseHighestEquivalentValue() {
+        // 256..511 use buckets of width 2
+        assertEquals(301, percentileOfPair(300));
+        // 512..1023 use buckets of width 4
+        assertEquals(1003, percentileOfPair(1000));
+        // 2^19..2^20-1 use buckets of width 4096
+        assertEquals(1_003_519, percentileOfPair(1_000_000));
+    }
+
+    /**
+     * Every reported value is within 1% above the recorded one.
+     */
+    @Test
+    public void relativeErrorStaysBelowOnePercent() {
+        for (long value = 1; value < 1L << 40; value = value * 3 + 1) {
+            long reported = percentileOfPair(value);
+            assertTrue(value + " reported as " + reported, reported >= value);
+            assertTrue(value + " reported as " + reported, reported - value <= value / 100);
+        }
+    }
+
+    /**
+     * A percentile never exceeds the largest recorded value.
+     */
+    @Test
+    public void percentileIsCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        assertEquals(1000, histogram.getValueAtPercentile(100));
+        assertEquals(1000, histogram.getValueAtPercentile(150));
+    }
+
+    /**
+     * Percentile ranks are rounded up, as in the nearest-rank method.
+     */
+    @Test
+    public void percentileUsesNearestRank() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 9; i++) {
+            histogram.record(10);
+        }
+        histogram.record(200);
+        assertEquals(10, histogram.getValueAtPercentile(90));
+        assertEquals(200, histogram.getValueAtPercentile(90.1));
+    }
+
+    /**
+     * Negative values are clamped to zero.
+     */
+    @Test
+    public void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getTotalCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    /**
+     * The largest representable value has a bucket.
+     */
+    @Test
+    public void recordsLongMaxValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+    }
+
+    /**
+     * Merging combines counts, extremes and the mean.
+     */
+    @Test
+    public void addMergesHistograms() {
+        LatencyHistogram first = new LatencyHistogram();
+        first.record(10);
+        first.record(20);
+        LatencyHistogram second = new LatencyHistogram();
+        second.record(5);
+        second.record(45);
+        LatencyHistogram empty = new LatencyHistogram();
+
+        first.add(second);
+        first.add(empty);
+
+        assertEquals(4, first.getTotalCount());
+        assertEquals(5, first.getMin());
+        assertEquals(45, first.getMax());
+        assertEquals(20.0, first.getMean(), 1e-9);
+        assertEquals(10, first.getValueAtPercentile(50));
+        assertEquals(20, first.getValueAtPercentile(75));
+    }
+
+    /**
+     * Records a value together with a larger one and reads back the median,
+     * so that the result is the bucket value rather than the maximum.
+     *
+     * @param value the value to look up
+     * @return the value reported for it
+     */
+    private static long percentileOfPair(long value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(value);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getValueAtPercentile(50);
+    }
+}